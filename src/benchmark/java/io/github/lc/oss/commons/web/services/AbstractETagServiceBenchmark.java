@@ -0,0 +1,84 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of {@link AbstractETagService#getETag(String)} under contention.
+ * Not part of the unit test suite, run manually with
+ * <code>mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=io.github.lc.oss.commons.web.services.AbstractETagServiceBenchmark</code>
+ * or from an IDE. Results are reported for 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbstractETagServiceBenchmark {
+    private static final int[] THREADS = new int[] { 1, 2, 4, 8, 16, 32, 64 };
+
+    private static class BenchmarkService extends AbstractETagService {
+        @Override
+        protected Clock getClock() {
+            return Clock.systemUTC();
+        }
+
+        @Override
+        protected String getAppVersion() {
+            return "1.0.0-Benchmark";
+        }
+    }
+
+    /**
+     * Number of distinct keys, larger than the default cache size to include
+     * eviction
+     */
+    @Param({ "100", "20000" })
+    public int keys;
+
+    private AbstractETagService service;
+    private String[] ids;
+
+    @Setup
+    public void setup() {
+        this.service = new BenchmarkService();
+        this.service.setEnabled(true);
+        this.ids = new String[this.keys];
+        for (int i = 0; i < this.keys; i++) {
+            this.ids[i] = "/img/resource-" + i + ".png";
+        }
+    }
+
+    @Benchmark
+    public String getETag() {
+        return this.service.getETag(this.ids[ThreadLocalRandom.current().nextInt(this.ids.length)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : AbstractETagServiceBenchmark.THREADS) {
+            Options options = new OptionsBuilder(). //
+                    include(AbstractETagServiceBenchmark.class.getSimpleName()). //
+                    threads(threads). //
+                    build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -1,30 +1,72 @@
 package io.github.lc.oss.commons.web.advice;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.util.Assert;
 import org.springframework.web.servlet.ModelAndView;
 
 import io.github.lc.oss.commons.l10n.L10N;
 import io.github.lc.oss.commons.l10n.UserLocale;
 import io.github.lc.oss.commons.l10n.Variable;
+import io.github.lc.oss.commons.util.IoTools;
+import io.github.lc.oss.commons.web.controllers.BundleUrlProvider;
+import io.github.lc.oss.commons.web.util.L10NChangedEvent;
+import io.github.lc.oss.commons.web.util.WeightedCache;
 
 @Aspect
 public class CommonAdvice extends AbstractControllerAdvice {
-    private Map<Locale, Map<String, String>> textCache = new HashMap<>();
-    private Map<Locale, Set<String>> varCache = new HashMap<>();
+    /**
+     * Everything derived from one locale's text, replaced as a whole.
+     */
+    private static class Snapshot {
+        private final long generation;
+        private final Map<String, String> text;
+        private final Set<String> vars;
+        private final Map<String, String> model;
+
+        public Snapshot(long generation, Map<String, String> text, Set<String> vars, Map<String, String> model) {
+            this.generation = generation;
+            this.text = text;
+            this.vars = vars;
+            this.model = model;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CommonAdvice.class);
+    private static final Pattern TEMPLATE_TOKEN = Pattern.compile("[\\w$-]+");
+    /* attributes that pull in (parts of) other templates */
+    private static final Pattern TEMPLATE_INCLUDE = Pattern.compile(
+            "(?:data-)?(?:th[:-](?:insert|replace|include|substituteby)|layout[:-]decorate)\\s*=\\s*([\"'])(.*?)\\1", Pattern.DOTALL);
+    /* template names that are computed when rendering */
+    private static final Pattern TEMPLATE_EXPRESSION = Pattern.compile("[$*#@|(){}?]");
+    /* marks views whose template could not be read */
+    private static final Set<String> UNKNOWN_VIEW = Collections.unmodifiableSet(new HashSet<>());
+
+    /* unbounded, there is one entry per supported locale */
+    private final WeightedCache<Locale, Snapshot> cache = new WeightedCache<>(0);
+    private final AtomicLong generation = new AtomicLong();
+    private final Object lock = new Object();
+    private volatile WeightedCache<String, Set<String>> viewTokens;
 
     @Autowired
     private L10N l10n;
@@ -32,9 +74,23 @@ public class CommonAdvice extends AbstractControllerAdvice {
     private UserLocale userLocale;
     @Autowired(required = false)
     private CommonAdviceMvCustomizer customizer;
+    @Autowired(required = false)
+    private BundleUrlProvider bundleUrlProvider;
 
     @Value("${application.ui.caching:true}")
     private boolean caching;
+    @Value("${application.ui.watch.enabled:false}")
+    private boolean watch;
+    @Value("${application.ui.l10n.model-attribute:}")
+    private String modelAttribute;
+    @Value("${application.ui.l10n.template-scan.enabled:false}")
+    private boolean templateScan;
+    @Value("${application.ui.l10n.template-scan.prefix:templates/}")
+    private String templatePrefix = "templates/";
+    @Value("${application.ui.l10n.template-scan.suffix:.html}")
+    private String templateSuffix = ".html";
+    @Value("${application.ui.l10n.template-scan.max-views:1024}")
+    private int templateScanMaxViews = 1024;
 
     public void setCaching(boolean enabled) {
         this.caching = enabled;
@@ -44,6 +100,57 @@ public class CommonAdvice extends AbstractControllerAdvice {
         return this.caching;
     }
 
+    /**
+     * When enabled (e.g. with caching disabled during development) the text is
+     * only built again after an {@link L10NChangedEvent} instead of on every
+     * render.
+     */
+    protected boolean isWatch() {
+        return this.watch;
+    }
+
+    /**
+     * Every locale is built again on next use.
+     */
+    @EventListener
+    public void onL10NChanged(L10NChangedEvent event) {
+        this.generation.incrementAndGet();
+        this.cache.clear();
+    }
+
+    /**
+     * When set the text is added to the model as a single (read-only) map under
+     * this name instead of one attribute per message, so a render copies
+     * nothing.
+     */
+    protected String getModelAttribute() {
+        return this.modelAttribute;
+    }
+
+    /**
+     * When enabled only the messages a view's template refers to are added to
+     * the model, see {@link #getTemplateTokens(String)}.
+     */
+    protected boolean isTemplateScan() {
+        return this.templateScan;
+    }
+
+    protected String getTemplatePrefix() {
+        return this.templatePrefix;
+    }
+
+    protected String getTemplateSuffix() {
+        return this.templateSuffix;
+    }
+
+    /**
+     * Maximum number of views whose tokens are kept, least recently used views
+     * are scanned again.
+     */
+    protected int getTemplateScanMaxViews() {
+        return this.templateScanMaxViews;
+    }
+
     @Around("inAnyController() && returnsModelAndView() && withRequestMapping()")
     public Object modelAndView(final ProceedingJoinPoint method) {
         ModelAndView mv = null;
@@ -54,13 +161,30 @@ public class CommonAdvice extends AbstractControllerAdvice {
         }
 
         if (mv != null) {
-            Locale locale = this.getUserLocale().getLocale();
-            Map<String, String> text = new HashMap<>(this.getText(locale));
-            Set<String> vars = this.getVars(locale);
-            for (String id : vars) {
-                text.put(id, this.resolve(text.get(id)));
+            Map<String, String> model = this.getModel(this.getUserLocale().getLocale());
+            String attribute = this.getModelAttribute();
+            if (attribute != null && !attribute.trim().equals("")) {
+                mv.addObject(attribute, model);
+            } else {
+                Set<String> tokens = this.isTemplateScan() ? this.getTemplateTokens(mv.getViewName()) : null;
+                if (tokens == null) {
+                    mv.addAllObjects(model);
+                } else {
+                    for (String token : tokens) {
+                        String value = model.get(token);
+                        if (value != null) {
+                            mv.addObject(token, value);
+                        }
+                    }
+                }
+            }
+
+            if (this.bundleUrlProvider != null) {
+                Map<String, String> urls = this.bundleUrlProvider.getBundleUrls();
+                if (urls != null) {
+                    mv.addObject("bundleUrls", urls);
+                }
             }
-            mv.addAllObjects(text);
         }
 
         if (this.customizer != null) {
@@ -69,6 +193,102 @@ public class CommonAdvice extends AbstractControllerAdvice {
         return mv;
     }
 
+    /**
+     * Every word in the view's template (<code>prefix + viewName + suffix</code>
+     * on the class path) and in every template it includes or is decorated by
+     * (<code>th:insert</code>, <code>th:replace</code>, <code>th:include</code>,
+     * <code>layout:decorate</code>), a superset of the message ids they refer
+     * to. Templates are scanned once per view when caching is enabled.
+     *
+     * @return <code>null</code> if a template cannot be read or an included
+     *         template name is only known when rendering (e.g. redirects or
+     *         <code>~{${page} :: body}</code>), in which case every message is
+     *         added
+     */
+    protected Set<String> getTemplateTokens(String viewName) {
+        if (viewName == null || viewName.contains(":")) {
+            return null;
+        }
+
+        Set<String> tokens;
+        if (this.enableCaching()) {
+            tokens = this.getViewTokens().get(viewName, v -> {
+                Set<String> scanned = this.scanTemplates(v);
+                return scanned == null ? CommonAdvice.UNKNOWN_VIEW : scanned;
+            });
+        } else {
+            tokens = this.scanTemplates(viewName);
+        }
+        return tokens == CommonAdvice.UNKNOWN_VIEW ? null : tokens;
+    }
+
+    private WeightedCache<String, Set<String>> getViewTokens() {
+        WeightedCache<String, Set<String>> current = this.viewTokens;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.viewTokens;
+                if (current == null) {
+                    current = new WeightedCache<>(Math.max(1, this.getTemplateScanMaxViews()));
+                    this.viewTokens = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Set<String> scanTemplates(String viewName) {
+        Set<String> tokens = new HashSet<>();
+        Set<String> scanned = new HashSet<>();
+        List<String> pending = new ArrayList<>();
+        pending.add(viewName);
+        while (!pending.isEmpty()) {
+            String name = pending.remove(pending.size() - 1);
+            if (!scanned.add(name)) {
+                continue;
+            }
+
+            String template = this.readTemplate(name);
+            if (template == null) {
+                return null;
+            }
+
+            Matcher m = CommonAdvice.TEMPLATE_TOKEN.matcher(template);
+            while (m.find()) {
+                tokens.add(m.group());
+            }
+
+            m = CommonAdvice.TEMPLATE_INCLUDE.matcher(template);
+            while (m.find()) {
+                String expression = m.group(2).trim();
+                if (expression.startsWith("~{") && expression.endsWith("}")) {
+                    expression = expression.substring(2, expression.length() - 1).trim();
+                }
+                int selector = expression.indexOf("::");
+                String included = (selector < 0 ? expression : expression.substring(0, selector)).trim();
+                if (included.equals("") || included.equals("this")) {
+                    /* a fragment of the same template */
+                    continue;
+                }
+                if (CommonAdvice.TEMPLATE_EXPRESSION.matcher(included).find()) {
+                    return null;
+                }
+                pending.add(included);
+            }
+        }
+        return Collections.unmodifiableSet(tokens);
+    }
+
+    private String readTemplate(String name) {
+        byte[] template;
+        try {
+            template = IoTools.readFile(this.getTemplatePrefix() + name + this.getTemplateSuffix());
+        } catch (RuntimeException ex) {
+            CommonAdvice.logger.warn("Error reading template '" + name + "', adding every message", ex);
+            return null;
+        }
+        return template == null ? null : new String(template, StandardCharsets.UTF_8);
+    }
+
     private String resolve(String text) {
         String value = text;
         Matcher m = Variable.HTML_ID.matcher(text);
@@ -84,26 +304,50 @@ public class CommonAdvice extends AbstractControllerAdvice {
     }
 
     Map<String, String> getText(Locale locale) {
-        Map<String, String> cache = this.textCache.get(locale);
-        if (cache == null || !this.enableCaching()) {
-            this.updateCache(locale);
-            cache = this.textCache.get(locale);
-        }
-        return cache;
+        return this.getSnapshot(locale).text;
+    }
+
+    /**
+     * @return the text with all variables resolved, shared by every render for
+     *         the locale
+     */
+    Map<String, String> getModel(Locale locale) {
+        return this.getSnapshot(locale).model;
     }
 
     Set<String> getVars(Locale locale) {
-        Set<String> cache = this.varCache.get(locale);
-        Assert.notNull(cache, "Illegal state - expected cache to be built before calling this method");
-        return cache;
+        Snapshot snapshot = this.cache.get(this.toKey(locale));
+        Assert.notNull(snapshot, "Illegal state - expected cache to be built before calling this method");
+        return snapshot.vars;
     }
 
-    private void updateCache(Locale locale) {
+    /**
+     * Each locale is built once per {@link L10NChangedEvent}, concurrent renders
+     * wait for that build. With caching disabled (and no {@link #isWatch()}) it
+     * is built for every render.
+     */
+    private Snapshot getSnapshot(Locale locale) {
+        long current = this.generation.get();
+        if (this.enableCaching() || this.isWatch()) {
+            /* a build that raced an event is stamped with the old generation */
+            return this.cache.get(this.toKey(locale), s -> s.generation == current, k -> this.build(locale, current));
+        }
+        Snapshot snapshot = this.build(locale, current);
+        this.cache.put(this.toKey(locale), snapshot);
+        return snapshot;
+    }
+
+    private Locale toKey(Locale locale) {
+        return locale == null ? Locale.ROOT : locale;
+    }
+
+    private Snapshot build(Locale locale, long generation) {
+        Map<String, String> source = this.getL10N().getAll(locale);
         Map<String, String> text = new HashMap<>();
         Set<String> vars = new HashSet<>();
         Matcher m;
         String id;
-        for (Entry<String, String> e : this.getL10N().getAll(locale).entrySet()) {
+        for (Entry<String, String> e : source.entrySet()) {
             id = e.getKey().replace(".", "_");
             text.put(id, e.getValue());
             m = Variable.HTML_ID.matcher(e.getValue());
@@ -111,8 +355,16 @@ public class CommonAdvice extends AbstractControllerAdvice {
                 vars.add(id);
             }
         }
-        this.textCache.put(locale, Collections.unmodifiableMap(text));
-        this.varCache.put(locale, Collections.unmodifiableSet(vars));
+        Map<String, String> model = new HashMap<>(text);
+        for (String var : vars) {
+            model.put(var, this.resolve(model.get(var)));
+        }
+
+        return new Snapshot( //
+                generation, //
+                Collections.unmodifiableMap(text), //
+                Collections.unmodifiableSet(vars), //
+                Collections.unmodifiableMap(model));
     }
 
     private L10N getL10N() {
@@ -124,9 +124,11 @@ public class DefaultAppConfiguration extends AbstractConfiguration {
                 .requestMatchers(this.matchers(HttpMethod.GET, //
                         /* Resources */
                         "^/css$", //
+                        "^/css/v/[0-9a-f]{16}$", //
                         "^/favicon.ico$", //
                         "^/font/fontawesome/fa-(?:brands|regular|solid)-(?:400|900).woff2$", //
                         "^/js$", //
+                        "^/js/v/[0-9a-f]{16}$", //
                         "^/js/[a-zA-Z0-9]+$", //
                         "^/l10n/[a-z]{2}(?:-[A-Z]{2})?/messages.Application.Error.1$"))
                 .permitAll());
@@ -0,0 +1,15 @@
+package io.github.lc.oss.commons.web.controllers;
+
+import java.util.Map;
+
+/**
+ * Provides the URLs views should use to include the CSS/JS bundles.
+ */
+public interface BundleUrlProvider {
+    /**
+     * @return bundle URLs for the current user's theme keyed by bundle name
+     *         (<code>css</code>, <code>js</code>), <code>null</code> if views
+     *         should use the plain URLs
+     */
+    Map<String, String> getBundleUrls();
+}
@@ -1,21 +1,55 @@
 package io.github.lc.oss.commons.web.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -23,7 +57,9 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.HandlerMapping;
 
@@ -35,12 +71,19 @@ import io.github.lc.oss.commons.web.resources.AbstractResourceResolver;
 import io.github.lc.oss.commons.web.resources.Minifier;
 import io.github.lc.oss.commons.web.resources.StaticResourceFileResolver;
 import io.github.lc.oss.commons.web.services.ETagService;
+import io.github.lc.oss.commons.web.services.ThemeService;
 import io.github.lc.oss.commons.web.tokens.CsrfTokenManager;
+import io.github.lc.oss.commons.web.util.ContentEncoder;
+import io.github.lc.oss.commons.web.util.ContentHash;
 import io.github.lc.oss.commons.web.util.ContextUtil;
+import io.github.lc.oss.commons.web.util.DirectoryWatcher;
+import io.github.lc.oss.commons.web.util.GzipContentEncoder;
+import io.github.lc.oss.commons.web.util.L10NChangedEvent;
+import io.github.lc.oss.commons.web.util.WeightedCache;
 
 import jakarta.servlet.ServletContext;
 
-public class ResourceController extends AbstractResourceResolver {
+public class ResourceController extends AbstractResourceResolver implements BundleUrlProvider, DisposableBean {
     protected static final Map<String, String> FILE_EXT_MEDIATYPES;
     static {
         Map<String, String> mediaMap = new HashMap<>();
@@ -55,9 +98,246 @@ public class ResourceController extends AbstractResourceResolver {
         FILE_EXT_MEDIATYPES = Collections.unmodifiableMap(mediaMap);
     }
 
-    private final Map<String, String> cache = new HashMap<>();
+    private static class ContentETag {
+        private final Object content;
+        private final String etag;
 
-    private List<StaticResourceFileResolver> reverseResolvers;
+        public ContentETag(Object content, String etag) {
+            this.content = content;
+            this.etag = etag;
+        }
+    }
+
+    private static class FileETag {
+        private final long lastModified;
+        private final long size;
+        private final String etag;
+
+        public FileETag(long lastModified, long size, String etag) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.etag = etag;
+        }
+    }
+
+    private static class EncodedBundle {
+        private final Object content;
+        private final byte[] bytes;
+
+        public EncodedBundle(Object content, byte[] bytes) {
+            this.content = content;
+            this.bytes = bytes;
+        }
+    }
+
+    protected static class Fragment {
+        private final long lastModified;
+        private final long size;
+        private final long hash;
+        private final String content;
+
+        public Fragment(long lastModified, long size, long hash, String content) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+            this.content = content;
+        }
+
+        public String getContent() {
+            return this.content;
+        }
+    }
+
+    /**
+     * How often the ETag of each cache key changed, on top of a base shared by all
+     * keys. Replaced as a whole (never cleared) so readers always see a
+     * consistent base and counts.
+     */
+    private static class ETagGenerations {
+        private final long base;
+        private final Map<String, Long> keys = new ConcurrentHashMap<>();
+
+        public ETagGenerations(long base) {
+            this.base = base;
+        }
+
+        public long get(String key) {
+            return this.base + this.keys.getOrDefault(key, 0L);
+        }
+    }
+
+    /**
+     * The cached fragment (<code>current</code>) and, when that is missing or
+     * outdated, the file as just read (<code>read</code>, not processed yet).
+     */
+    private static class FragmentSource {
+        private final FragmentKey key;
+        private final Fragment current;
+        private final Fragment read;
+
+        public FragmentSource(FragmentKey key, Fragment current, Fragment read) {
+            this.key = key;
+            this.current = current;
+            this.read = read;
+        }
+    }
+
+    /**
+     * Fragments depend on the bundle type and on the theme (through the values
+     * replaced in them), not only on the file.
+     */
+    private static class FragmentKey {
+        private final Types type;
+        private final String theme;
+        private final String path;
+
+        public FragmentKey(Types type, String theme, String path) {
+            this.type = type;
+            this.theme = theme;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof FragmentKey)) {
+                return false;
+            }
+            FragmentKey key = (FragmentKey) other;
+            return this.type == key.type && Objects.equals(this.theme, key.theme) && this.path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.type, this.theme, this.path);
+        }
+    }
+
+    /**
+     * A re-readable {@link InputStreamResource} backed by another resource. Spring
+     * MVC never asks a plain {@link InputStreamResource} for its length or splits
+     * it into byte ranges, but it does both for subclasses, so file backed content
+     * gets <code>Content-Length</code> and range support while the handlers keep
+     * returning <code>ResponseEntity&lt;InputStreamResource&gt;</code>. The body
+     * is always copied from {@link #getInputStream()}, see
+     * {@link ResourceController#getResource(Types, WebRequest)} for the file
+     * itself.
+     */
+    protected static class ResourceStream extends InputStreamResource {
+        private final Resource resource;
+
+        public ResourceStream(Resource resource) {
+            super(InputStream.nullInputStream());
+            this.resource = resource;
+        }
+
+        public Resource getResource() {
+            return this.resource;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return this.resource.getInputStream();
+        }
+
+        @Override
+        public boolean exists() {
+            return this.resource.exists();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return false;
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return this.resource.contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return this.resource.lastModified();
+        }
+
+        @Override
+        public String getDescription() {
+            return this.resource.getDescription();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other || (other instanceof ResourceStream && this.resource.equals(((ResourceStream) other).resource));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.resource.hashCode();
+        }
+    }
+
+    private static class SerializedL10n {
+        private final Map<String, String> values;
+        private final byte[] json;
+        private final String etag;
+        private final Map<String, byte[]> encoded = new ConcurrentHashMap<>();
+
+        public SerializedL10n(Map<String, String> values, byte[] json, String etag) {
+            this.values = values;
+            this.json = json;
+            this.etag = etag;
+        }
+    }
+
+    private static class CachedFile {
+        private final long lastModified;
+        private final long size;
+        private final byte[] bytes;
+
+        public CachedFile(long lastModified, long size, byte[] bytes) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Every file of one type in every resolver layer for one theme, keyed by each
+     * path suffix that starts at a directory boundary. Layers are in lookup
+     * (reverse) order, <code>null</code> where the resolver does not apply.
+     */
+    private static class StaticIndex {
+        private final long built;
+        private final List<Map<String, List<String>>> layers;
+
+        public StaticIndex(long built, List<Map<String, List<String>>> layers) {
+            this.built = built;
+            this.layers = layers;
+        }
+    }
+
+    private static final ContentEncoder GZIP = new GzipContentEncoder();
+    private static final Logger logger = LoggerFactory.getLogger(ResourceController.class);
+
+    private final Object lock = new Object();
+    private volatile WeightedCache<String, String> cache;
+    private volatile WeightedCache<String, EncodedBundle> encodedCache;
+    private volatile List<ContentEncoder> encoders;
+    private volatile WeightedCache<String, CachedFile> fileCache;
+    private volatile ExecutorService compilePool;
+    private volatile WeightedCache<FragmentKey, Fragment> fragmentCache;
+    private volatile WeightedCache<String, SerializedL10n> l10nCache;
+    private final Map<String, StaticIndex> staticIndexes = new ConcurrentHashMap<>();
+    private final AtomicBoolean warmUpStarted = new AtomicBoolean();
+    private final AtomicBoolean watchStarted = new AtomicBoolean();
+    private final List<DirectoryWatcher> watchers = new ArrayList<>();
+    private final Map<String, ContentETag> contentETags = new ConcurrentHashMap<>();
+    private final Map<String, FileETag> fileETags = new ConcurrentHashMap<>();
+    private volatile ETagGenerations etagGenerations = new ETagGenerations(0);
+
+    private volatile List<StaticResourceFileResolver> reverseResolvers;
 
     @Autowired(required = false)
     private L10N l10n;
@@ -68,6 +348,8 @@ public class ResourceController extends AbstractResourceResolver {
     @Autowired(required = false)
     private Minifier minifier;
     @Autowired(required = false)
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired(required = false)
     private CsrfTokenManager csrfTokenManager;
     @Autowired(required = false)
     private ETagService etagService;
@@ -82,6 +364,10 @@ public class ResourceController extends AbstractResourceResolver {
     private ThemeResourceFileResolver extThemeResolver;
     @Autowired(required = false)
     private UserTheme userTheme;
+    @Autowired(required = false)
+    private List<ContentEncoder> contentEncoders;
+    @Autowired(required = false)
+    private ThemeService themeService;
 
     @Value("${application.ui.caching:true}")
     private boolean enableCaching;
@@ -93,15 +379,88 @@ public class ResourceController extends AbstractResourceResolver {
     private String appResourcePath;
     @Value("${application.ui.research.search-depth:5}")
     private int searchDepth;
+    @Value("${application.ui.etags.content-based:false}")
+    private boolean contentBasedETags;
+    @Value("${application.ui.cache.max-bytes:33554432}")
+    private long cacheMaxBytes = 32 * 1024 * 1024;
+    @Value("${application.ui.compression.enabled:false}")
+    private boolean compression;
+    @Value("${application.ui.compression.min-length:1024}")
+    private int compressionMinLength = 1024;
+    @Value("${application.ui.warm-up.enabled:false}")
+    private boolean warmUp;
+    @Value("${application.ui.warm-up.threads:2}")
+    private int warmUpThreads = 2;
+    @Value("${application.ui.fingerprinting.enabled:false}")
+    private boolean fingerprinting;
+    @Value("${application.ui.static.index.enabled:true}")
+    private boolean staticIndex = true;
+    @Value("${application.ui.static.index.refresh-seconds:0}")
+    private int staticIndexRefreshSeconds;
+    @Value("${application.ui.static.memory-cache.enabled:false}")
+    private boolean staticMemoryCache;
+    @Value("${application.ui.static.memory-cache.max-bytes:16777216}")
+    private long staticMemoryCacheMaxBytes = 16 * 1024 * 1024;
+    @Value("${application.ui.static.memory-cache.max-file-bytes:65536}")
+    private long staticMemoryCacheMaxFileBytes = 64 * 1024;
+    @Value("${application.ui.watch.enabled:false}")
+    private boolean watch;
+    @Value("${application.ui.watch.etag-generations.max-entries:10000}")
+    private int etagGenerationsMaxEntries = 10000;
+    @Value("${application.l10n.external-path:}")
+    private String externalL10nPath;
+    @Value("${application.ui.compile.parallel.enabled:false}")
+    private boolean parallelCompile;
+    @Value("${application.ui.compile.threads:6}")
+    private int compileThreads = 6;
+    @Value("${application.ui.compile.incremental.enabled:false}")
+    private boolean incrementalCompile;
+    @Value("${application.ui.compile.incremental.minify-per-file:false}")
+    private boolean minifyPerFile;
+    @Value("${application.ui.l10n.serialized.enabled:false}")
+    private boolean serializedL10n;
+    @Value("${application.ui.l10n.batch.max-prefixes:20}")
+    private int l10nMaxPrefixes = 20;
 
     protected void clearCache() {
-        this.cache.clear();
+        this.getCache().clear();
+        this.getEncodedCache().clear();
+        this.getFileCache().clear();
+        this.getL10nCache().clear();
+        this.staticIndexes.clear();
+        this.contentETags.clear();
+        this.fileETags.clear();
+    }
+
+    /**
+     * Drops the fragments of every bundle source file, see
+     * {@link #isIncrementalCompile()}. {@link #clearCache()} keeps them, they
+     * are checked against their file on every use.
+     */
+    protected void clearFragments() {
+        this.getFragmentCache().clear();
     }
 
     protected Set<String> getAllowedPages() {
         return null;
     }
 
+    /**
+     * Named sets of l10n prefixes served together by
+     * <code>/l10n/{locale}/bundle/{name}</code>.
+     */
+    protected Map<String, List<String>> getL10nBundles() {
+        return null;
+    }
+
+    /**
+     * Maximum number of prefixes a single <code>/l10n/{locale}</code> request may
+     * combine.
+     */
+    protected int getL10nMaxPrefixes() {
+        return this.l10nMaxPrefixes;
+    }
+
     protected String getAppResourcePath() {
         return this.appResourcePath;
     }
@@ -110,6 +469,481 @@ public class ResourceController extends AbstractResourceResolver {
         return null;
     }
 
+    /**
+     * Compiled bundle cache. Bounded by {@link #getCacheMaxBytes()} (strings are
+     * weighed at two bytes per char) with least recently used eviction; hit, miss
+     * and eviction counts are available from the cache itself.
+     */
+    protected WeightedCache<String, String> getCache() {
+        WeightedCache<String, String> current = this.cache;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.cache;
+                if (current == null) {
+                    current = new WeightedCache<>(this.getCacheMaxBytes(), v -> 2L * v.length());
+                    this.cache = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    protected long getCacheMaxBytes() {
+        return this.cacheMaxBytes;
+    }
+
+    /**
+     * Compressed variants of compiled bundles, bounded by
+     * {@link #getCacheMaxBytes()}.
+     */
+    private WeightedCache<String, EncodedBundle> getEncodedCache() {
+        WeightedCache<String, EncodedBundle> current = this.encodedCache;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.encodedCache;
+                if (current == null) {
+                    current = new WeightedCache<>(this.getCacheMaxBytes(), v -> v.bytes.length);
+                    this.encodedCache = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Contents of small static files, bounded by
+     * {@link #getStaticMemoryCacheMaxBytes()}.
+     */
+    private WeightedCache<String, CachedFile> getFileCache() {
+        WeightedCache<String, CachedFile> current = this.fileCache;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.fileCache;
+                if (current == null) {
+                    current = new WeightedCache<>(this.getStaticMemoryCacheMaxBytes(), v -> v.bytes.length);
+                    this.fileCache = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * When enabled (and caching is enabled) every bundle is built in the
+     * background once the application context is ready, see {@link #warmUp()}.
+     */
+    protected boolean isWarmUp() {
+        return this.warmUp;
+    }
+
+    protected int getWarmUpThreads() {
+        return this.warmUpThreads;
+    }
+
+    /**
+     * Themes to warm up in addition to the default (no theme).
+     */
+    protected Collection<String> getWarmUpThemes() {
+        if (this.themeService == null) {
+            return Collections.emptyList();
+        }
+        return this.themeService.getThemes();
+    }
+
+    @EventListener
+    public void onContextRefreshed(ContextRefreshedEvent event) {
+        if (this.isWatch() && this.watchStarted.compareAndSet(false, true)) {
+            this.startWatching();
+        }
+        if (this.isWarmUp() && this.isCaching() && this.warmUpStarted.compareAndSet(false, true)) {
+            this.warmUp();
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        synchronized (this.watchers) {
+            for (DirectoryWatcher watcher : this.watchers) {
+                watcher.close();
+            }
+            this.watchers.clear();
+        }
+        synchronized (this.lock) {
+            if (this.compilePool != null) {
+                this.compilePool.shutdownNow();
+                this.compilePool = null;
+            }
+        }
+    }
+
+    /**
+     * When enabled the external resource and external theme directories are
+     * watched for changes and only the affected cache entries and ETags are
+     * dropped, see {@link #onResourceChanged(String, String, String)}. Changes to
+     * the external l10n directory publish an {@link L10NChangedEvent}.
+     */
+    protected boolean isWatch() {
+        return this.watch;
+    }
+
+    /**
+     * Number of changed cache keys whose ETag ids are tracked one by one, once
+     * exceeded every key moves to a new id at once, see
+     * {@link #getETagId(String)}.
+     */
+    protected int getETagGenerationsMaxEntries() {
+        return this.etagGenerationsMaxEntries;
+    }
+
+    protected void startWatching() {
+        String external = this.getExternalResourcePath();
+        if (external != null && !external.trim().equals("")) {
+            this.watch(external, (root, changed) -> {
+                this.onResourceChanged(null, this.toRelativePath(root, changed), changed.toString());
+            });
+        }
+
+        if (this.extThemeResolver != null && this.extThemeResolver.getThemesRoot() != null) {
+            this.watch(this.extThemeResolver.getThemesRoot(), (root, changed) -> {
+                Path relative = root.relativize(changed);
+                if (relative.toString().equals("")) {
+                    this.onThemesChanged();
+                    this.onResourceChanged(null, null, changed.toString());
+                    return;
+                }
+
+                String theme = relative.getName(0).toString();
+                if (relative.getNameCount() == 1) {
+                    this.onThemesChanged();
+                    this.onResourceChanged(theme, null, changed.toString());
+                } else {
+                    this.onResourceChanged(theme, this.toRelativePath(root.resolve(theme), changed), changed.toString());
+                }
+            });
+        }
+
+        String l10nRoot = this.getExternalL10nPath();
+        if (l10nRoot != null && !l10nRoot.trim().equals("")) {
+            this.watch(l10nRoot, (root, changed) -> {
+                L10NChangedEvent event = new L10NChangedEvent(this);
+                if (this.eventPublisher == null) {
+                    this.onL10NChanged(event);
+                } else {
+                    this.eventPublisher.publishEvent(event);
+                }
+            });
+        }
+    }
+
+    private void watch(String root, BiConsumer<Path, Path> listener) {
+        Path path = Paths.get(root);
+        if (!path.isAbsolute()) {
+            String absolute = IoTools.getAbsoluteFilePath(root);
+            path = absolute == null ? path.toAbsolutePath() : Paths.get(absolute);
+        }
+        if (!Files.isDirectory(path)) {
+            ResourceController.logger.warn("Cannot watch '" + root + "', it is not a directory");
+            return;
+        }
+
+        Path watched = path;
+        DirectoryWatcher watcher = new DirectoryWatcher(watched, this.getSearchDepth(), changed -> listener.accept(watched, changed));
+        try {
+            watcher.start();
+        } catch (IOException ex) {
+            throw new RuntimeException("Error watching '" + root + "'", ex);
+        }
+        synchronized (this.watchers) {
+            this.watchers.add(watcher);
+        }
+    }
+
+    private String toRelativePath(Path root, Path changed) {
+        String relative = root.relativize(changed).toString().replace("\\", "/");
+        return relative.equals("") ? null : relative;
+    }
+
+    /**
+     * A theme was added or removed.
+     */
+    protected void onThemesChanged() {
+        if (this.themeService != null) {
+            this.themeService.clearCache();
+        }
+        synchronized (this.lock) {
+            this.resolvers = null;
+            this.reverseResolvers = null;
+        }
+    }
+
+    /**
+     * Drops everything cached for a changed file or directory.
+     *
+     * @param theme        the theme the file belongs to, <code>null</code> for a
+     *                     file shared by all themes
+     * @param path         the path of the file relative to its resource root,
+     *                     <code>null</code> for a whole directory
+     * @param absolutePath the absolute path of the file or directory
+     */
+    protected void onResourceChanged(String theme, String path, String absolutePath) {
+        Types type = path == null ? null
+                : Arrays.stream(Types.values()). //
+                        filter(t -> t.getFileExtensionsPattern().matcher(path).matches()). //
+                        findFirst(). //
+                        orElse(null);
+
+        if (path == null) {
+            /*
+             * Which files of the directory changed is unknown, every ETag issued so far
+             * is stale
+             */
+            this.renewETagIds();
+        }
+
+        for (Types t : type == null ? Arrays.asList(Types.values()) : Arrays.asList(type)) {
+            switch (t) {
+                case css:
+                case js:
+                    this.evictBundles(theme, t);
+                    if (absolutePath != null) {
+                        this.getFragmentCache().removeIf(k -> k.path.startsWith(absolutePath));
+                    }
+                    break;
+                default:
+                    this.evictStaticFiles(theme, t, path, absolutePath);
+                    break;
+            }
+        }
+    }
+
+    private void evictBundles(String theme, Types type) {
+        String prefix = this.getCacheKeyPrefix() == null ? "" : this.getCacheKeyPrefix();
+        String suffix = "-" + type.name();
+        String themeKey = prefix + (theme == null ? "" : theme) + suffix;
+        Predicate<String> matches = theme == null ? k -> k.startsWith(prefix) && k.endsWith(suffix) : k -> k.equals(themeKey);
+
+        Set<String> keys = this.getCache().keySet().stream().filter(matches).collect(Collectors.toSet());
+        keys.addAll(this.contentETags.keySet().stream().filter(matches).collect(Collectors.toSet()));
+        keys.add(themeKey);
+        if (theme == null && this.themeService != null) {
+            /* the bundle of a theme may have been served without still being cached */
+            this.themeService.getThemes().forEach(t -> keys.add(prefix + t + suffix));
+        }
+        for (String key : keys) {
+            this.getCache().remove(key);
+            this.contentETags.remove(key);
+            this.evictETag(key);
+        }
+        this.getEncodedCache().removeIf(k -> matches.test(k.substring(0, k.lastIndexOf(';'))));
+    }
+
+    private void evictStaticFiles(String theme, Types type, String path, String absolutePath) {
+        String indexSuffix = "|" + type.name();
+        this.staticIndexes.keySet().removeIf(k -> k.endsWith(indexSuffix) && (theme == null || k.equals(theme + indexSuffix)));
+
+        if (absolutePath != null) {
+            this.getFileCache().removeIf(k -> k.startsWith(absolutePath));
+            this.fileETags.keySet().removeIf(k -> k.startsWith(absolutePath));
+        }
+
+        if (path != null) {
+            /*
+             * Requests are keyed by their path within the handler mapping, any trailing
+             * part of the changed path may have been requested
+             */
+            String prefix = this.getCacheKeyPrefix() == null ? "" : this.getCacheKeyPrefix();
+            String requestPath = "/" + path;
+            for (int i = 0; i >= 0; i = requestPath.indexOf('/', i + 1)) {
+                this.evictETag(prefix + "-" + type.name() + "-" + requestPath.substring(i));
+            }
+        }
+    }
+
+    private void evictETag(String key) {
+        if (this.getETagService() != null) {
+            this.getETagService().evictETag(this.getETagId(key));
+        }
+
+        synchronized (this.lock) {
+            ETagGenerations current = this.etagGenerations;
+            current.keys.merge(key, 1L, Long::sum);
+            if (current.keys.size() > this.getETagGenerationsMaxEntries()) {
+                this.renewETagIds();
+            }
+        }
+    }
+
+    /**
+     * Moves every key to a new ETag id and forgets the per key generations. The
+     * new base is above every generation issued so far, so no key ever gets an
+     * old id back.
+     */
+    private void renewETagIds() {
+        synchronized (this.lock) {
+            ETagGenerations current = this.etagGenerations;
+            long max = current.keys.values().stream().mapToLong(Long::longValue).max().orElse(0);
+            this.etagGenerations = new ETagGenerations(current.base + max + 1);
+        }
+    }
+
+    /**
+     * The id used with the {@link ETagService} for a cache key. The service only
+     * changes its values once an hour, so every change of the underlying files
+     * moves the key to a new id (and value).
+     */
+    protected String getETagId(String key) {
+        long generation = this.etagGenerations.get(key);
+        return generation == 0 ? key : key + "#" + generation;
+    }
+
+    /**
+     * Builds the CSS and JS bundles for every theme and the script of every
+     * allowed page (including their ETags and compressed variants) on a pool of
+     * {@link #getWarmUpThreads()} threads, so no request has to wait for a cold
+     * bundle. Failures are logged and do not stop the remaining bundles.
+     *
+     * @return completes once every bundle has been built
+     */
+    public CompletableFuture<Void> warmUp() {
+        List<String> themes = new ArrayList<>();
+        themes.add(null);
+        themes.addAll(this.getWarmUpThemes());
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (String theme : themes) {
+            for (Types type : Arrays.asList(Types.css, Types.js)) {
+                tasks.add(() -> this.warmUpBundle(theme, type));
+            }
+        }
+        Set<String> pages = this.getAllowedPages();
+        if (pages != null) {
+            for (String page : pages) {
+                tasks.add(() -> this.inRequestScope(null, () -> this.getPageScript(null, page)));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, this.getWarmUpThreads()), r -> {
+            Thread thread = new Thread(r, "resource-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<?>[] futures = tasks.stream(). //
+                map(task -> CompletableFuture.runAsync(task, pool)). //
+                toArray(CompletableFuture<?>[]::new);
+        pool.shutdown();
+        return CompletableFuture.allOf(futures);
+    }
+
+    private void warmUpBundle(String theme, Types type) {
+        this.inRequestScope(theme, () -> {
+            String cacheKey = this.getBundleKey(type);
+            String content = this.getCompiled(type, cacheKey);
+            if (this.isContentBasedETags() || this.isFingerprinting()) {
+                this.getContentETag(cacheKey, content);
+            }
+            if (!this.isContentBasedETags() && this.getETagService() != null) {
+                this.getETagService().getETag(this.getETagId(cacheKey));
+            }
+            if (this.isCompression() && content.length() >= this.getCompressionMinLength()) {
+                this.getContentEncoders().forEach(encoder -> this.getEncoded(cacheKey, content, encoder));
+            }
+        });
+    }
+
+    /**
+     * Runs <code>task</code> with a request scope of its own for the given theme,
+     * request scoped beans are not available on background threads otherwise.
+     */
+    private void inRequestScope(String theme, Runnable task) {
+        RequestAttributes previous = RequestContextHolder.getRequestAttributes();
+        WarmUpRequestAttributes attributes = new WarmUpRequestAttributes();
+        RequestContextHolder.setRequestAttributes(attributes);
+        try {
+            if (this.getUserTheme() != null) {
+                this.getUserTheme().setName(theme);
+            }
+            task.run();
+        } catch (RuntimeException ex) {
+            ResourceController.logger.warn("Error warming up resources for theme '" + theme + "'", ex);
+        } finally {
+            attributes.requestCompleted();
+            RequestContextHolder.setRequestAttributes(previous);
+        }
+    }
+
+    /**
+     * When enabled bundles are also served from content-hashed URLs (see
+     * {@link #getBundleUrls()}) with long-lived, immutable caching.
+     */
+    protected boolean isFingerprinting() {
+        return this.fingerprinting;
+    }
+
+    /**
+     * When enabled (and caching is enabled) static files are looked up in an
+     * in-memory index of each resolver layer instead of walking the file system
+     * on every request.
+     */
+    protected boolean isStaticIndex() {
+        return this.staticIndex;
+    }
+
+    /**
+     * How long an index is used before it is rebuilt on the next request, zero or
+     * less means until {@link #clearCache()}.
+     */
+    protected int getStaticIndexRefreshSeconds() {
+        return this.staticIndexRefreshSeconds;
+    }
+
+    protected boolean isStaticMemoryCache() {
+        return this.staticMemoryCache;
+    }
+
+    protected long getStaticMemoryCacheMaxBytes() {
+        return this.staticMemoryCacheMaxBytes;
+    }
+
+    /**
+     * Only files up to this size are kept in memory, larger files are always
+     * served from disk.
+     */
+    protected long getStaticMemoryCacheMaxFileBytes() {
+        return this.staticMemoryCacheMaxFileBytes;
+    }
+
+    /**
+     * Encoders available for CSS/JS bundles in order of preference. Defaults to
+     * every {@link ContentEncoder} bean followed by gzip (unless one of the beans
+     * already provides it).
+     */
+    protected List<ContentEncoder> getContentEncoders() {
+        List<ContentEncoder> current = this.encoders;
+        if (current == null) {
+            List<ContentEncoder> list = new ArrayList<>();
+            if (this.contentEncoders != null) {
+                list.addAll(this.contentEncoders);
+            }
+            if (list.stream().noneMatch(e -> e.getEncoding().equalsIgnoreCase(ResourceController.GZIP.getEncoding()))) {
+                list.add(ResourceController.GZIP);
+            }
+            current = Collections.unmodifiableList(list);
+            this.encoders = current;
+        }
+        return current;
+    }
+
+    protected boolean isCompression() {
+        return this.compression;
+    }
+
+    /**
+     * Bundles shorter than this (in characters) are always sent as-is.
+     */
+    protected int getCompressionMinLength() {
+        return this.compressionMinLength;
+    }
+
     @Override
     protected String getConsoleLogPrefix() {
         return this.consoleLogPrefix;
@@ -141,9 +975,18 @@ public class ResourceController extends AbstractResourceResolver {
         return this.externalResourcePath;
     }
 
+    protected String getExternalL10nPath() {
+        return this.externalL10nPath;
+    }
+
     @Override
     protected List<StaticResourceFileResolver> getFileResolvers() {
-        if (this.resolvers == null) {
+        /*
+         * Read once, onThemesChanged() may reset the field between the check and the
+         * return
+         */
+        List<StaticResourceFileResolver> current = this.resolvers;
+        if (current == null) {
             List<StaticResourceFileResolver> resolvers = Arrays.asList( //
                     AbstractResourceResolver.LIBRARY_RESOLVER, //
                     this.libThemeResolver, //
@@ -152,7 +995,7 @@ public class ResourceController extends AbstractResourceResolver {
                     new StaticResourceFileResolver(this.getExternalResourcePath(), this.getSearchDepth()), //
                     this.extThemeResolver);
 
-            this.resolvers = resolvers.stream(). //
+            current = resolvers.stream(). //
                     filter(r -> r != null). //
                     filter(r -> {
                         if (r instanceof ThemeResourceFileResolver) {
@@ -164,13 +1007,15 @@ public class ResourceController extends AbstractResourceResolver {
                         return true;
                     }). //
                     collect(Collectors.toUnmodifiableList());
+            this.resolvers = current;
         }
-        return this.resolvers;
+        return current;
 
     }
 
     protected List<StaticResourceFileResolver> getFileResolversReverse() {
-        if (this.reverseResolvers == null) {
+        List<StaticResourceFileResolver> current = this.reverseResolvers;
+        if (current == null) {
             List<StaticResourceFileResolver> resolvers = this.getFileResolvers();
             List<StaticResourceFileResolver> reverse = new ArrayList<>();
             if (!resolvers.isEmpty()) {
@@ -178,9 +1023,10 @@ public class ResourceController extends AbstractResourceResolver {
                     reverse.add(resolvers.get(i));
                 }
             }
-            this.reverseResolvers = Collections.unmodifiableList(reverse);
+            current = Collections.unmodifiableList(reverse);
+            this.reverseResolvers = current;
         }
-        return this.reverseResolvers;
+        return current;
     }
 
     @Override
@@ -209,11 +1055,38 @@ public class ResourceController extends AbstractResourceResolver {
         return this.enableCaching;
     }
 
+    /**
+     * When enabled ETags are strong hashes of the response bytes instead of
+     * {@link ETagService} values. They do not change with the hour, application
+     * version or node, only with the content.
+     */
+    protected boolean isContentBasedETags() {
+        return this.contentBasedETags;
+    }
+
     @GetMapping(path = "/css", produces = "text/css")
     public ResponseEntity<String> css(WebRequest request) {
         return this.get(Types.css, request);
     }
 
+    /**
+     * Same as {@link #css(WebRequest)} for clients that send
+     * <code>Accept-Encoding</code>. When compression is enabled the bundle is
+     * served pre-compressed, see {@link #getBundle(Types, WebRequest)}.
+     */
+    @GetMapping(path = "/css", produces = "text/css", headers = HttpHeaders.ACCEPT_ENCODING)
+    public ResponseEntity<?> cssEncoded(WebRequest request) {
+        if (!this.isCompression()) {
+            return this.css(request);
+        }
+        return this.getBundle(Types.css, request);
+    }
+
+    @GetMapping(path = "/css/v/{hash}", produces = "text/css")
+    public ResponseEntity<?> cssVersion(WebRequest request, @PathVariable("hash") String hash) {
+        return this.getVersionedBundle(Types.css, request, hash);
+    }
+
     @GetMapping(path = "/favicon.ico")
     public ResponseEntity<InputStreamResource> favicon(WebRequest request) {
         return this.getStreamResource(Types.img, request);
@@ -234,6 +1107,24 @@ public class ResourceController extends AbstractResourceResolver {
         return this.get(Types.js, request);
     }
 
+    /**
+     * Same as {@link #js(WebRequest)} for clients that send
+     * <code>Accept-Encoding</code>. When compression is enabled the bundle is
+     * served pre-compressed, see {@link #getBundle(Types, WebRequest)}.
+     */
+    @GetMapping(path = "/js", produces = "text/javascript", headers = HttpHeaders.ACCEPT_ENCODING)
+    public ResponseEntity<?> jsEncoded(WebRequest request) {
+        if (!this.isCompression()) {
+            return this.js(request);
+        }
+        return this.getBundle(Types.js, request);
+    }
+
+    @GetMapping(path = "/js/v/{hash}", produces = "text/javascript")
+    public ResponseEntity<?> jsVersion(WebRequest request, @PathVariable("hash") String hash) {
+        return this.getVersionedBundle(Types.js, request, hash);
+    }
+
     @GetMapping(path = "/js/{page}", produces = "text/javascript")
     public ResponseEntity<String> jsPage(WebRequest request, @PathVariable("page") String page) {
         return this.getPageScript(request, page);
@@ -244,12 +1135,42 @@ public class ResourceController extends AbstractResourceResolver {
         return this.getL10n(request, locale, prefix);
     }
 
+    /**
+     * Same as {@link #l10n(WebRequest, String, String)} for clients that send
+     * <code>Accept-Encoding</code>. When serialized l10n is enabled the text is
+     * served as cached JSON bytes, see
+     * {@link #getSerializedL10n(WebRequest, Locale, String)}.
+     */
+    @GetMapping(path = "/l10n/{locale}/{prefix}", produces = MediaType.APPLICATION_JSON_VALUE, headers = HttpHeaders.ACCEPT_ENCODING)
+    public ResponseEntity<?> l10nEncoded(WebRequest request, @PathVariable("locale") String locale, @PathVariable("prefix") String prefix) {
+        if (!this.isSerializedL10n()) {
+            return this.l10n(request, locale, prefix);
+        }
+        return this.getSerializedL10n(request, this.toLocale(locale), prefix);
+    }
+
+    @GetMapping(path = "/l10n/{locale}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> l10nBatch(WebRequest request, @PathVariable("locale") String locale,
+            @RequestParam(name = "prefix", required = false) List<String> prefixes) {
+        return this.getMergedL10n(request, this.toLocale(locale), prefixes);
+    }
+
+    @GetMapping(path = "/l10n/{locale}/bundle/{name}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> l10nBundle(WebRequest request, @PathVariable("locale") String locale, @PathVariable("name") String name) {
+        Map<String, List<String>> bundles = this.getL10nBundles();
+        List<String> prefixes = bundles == null ? null : bundles.get(name);
+        if (prefixes == null) {
+            return this.notFound();
+        }
+        return this.getMergedL10n(request, this.toLocale(locale), prefixes);
+    }
+
     protected boolean checkEtag(WebRequest request, String etagId) {
         if (request == null || this.getETagService() == null) {
             return false;
         }
 
-        String etag = this.getETagService().getETag(etagId);
+        String etag = this.getETagService().getETag(this.getETagId(etagId));
         return request.checkNotModified(etag);
     }
 
@@ -258,52 +1179,559 @@ public class ResourceController extends AbstractResourceResolver {
     }
 
     protected ResponseEntity<String> get(Types type, WebRequest request) {
-        if (type == null) {
-            throw new RuntimeException("Type cannot be null");
-        }
-
-        switch (type) {
-            case css:
-            case js:
-                /* valid, nothing to do */
-                break;
-            default:
-                throw new RuntimeException("This version of get() only supports CSS and JavaScript.");
-        }
+        String cacheKey = this.getBundleKey(type);
 
-        String prefix = this.getCacheKeyPrefix();
-        if (prefix == null) {
-            prefix = "";
-        }
-        String theme = this.getUserTheme() == null ? null : this.getUserTheme().getName();
-        if (theme != null) {
-            prefix += theme;
+        if (this.isContentBasedETags()) {
+            String content = this.getCompiled(type, cacheKey);
+            String etag = this.getContentETag(cacheKey, content);
+            if (request != null && request.checkNotModified(etag)) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+            return this.respond(content, cacheKey, etag);
         }
-        String cacheKey = prefix + "-" + type.name();
 
         if (this.checkEtag(request, cacheKey)) {
             return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         }
 
-        String content = this.getFromCache(cacheKey);
-        if (content == null) {
-            content = this.compile(type);
-            content = this.replaceValues(type, content);
-            content = this.minify(type, content);
-            if (this.isCaching()) {
-                this.putInCache(cacheKey, content);
-            }
-        }
-
-        return this.respond(content, cacheKey);
+        return this.respond(this.getCompiled(type, cacheKey), cacheKey);
     }
 
-    protected ResponseEntity<InputStreamResource> getStreamResource(Types type, WebRequest request) {
-        if (request == null) {
-            return this.notFound();
+    /**
+     * Serves a CSS/JS bundle, pre-compressed when compression is enabled and the
+     * client accepts one of the {@link #getContentEncoders()}. Compressed
+     * variants are built once per bundle and cached alongside it.
+     */
+    protected ResponseEntity<?> getBundle(Types type, WebRequest request) {
+        if (!this.isCompression()) {
+            return this.get(type, request);
         }
 
-        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setVary(Arrays.asList(HttpHeaders.ACCEPT_ENCODING));
+
+        ContentEncoder encoder = this.getContentEncoder(request);
+        String cacheKey = this.getBundleKey(type);
+        String content = null;
+        String etag = null;
+        if (this.isContentBasedETags()) {
+            content = this.getCompiled(type, cacheKey);
+            if (content.length() < this.getCompressionMinLength()) {
+                encoder = null;
+            }
+
+            etag = this.getContentETag(cacheKey, content);
+            if (encoder != null) {
+                /* strong ETags must differ per encoding */
+                etag = etag.substring(0, etag.length() - 1) + "-" + encoder.getEncoding() + "\"";
+            }
+            if (request != null && request.checkNotModified(etag)) {
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+        } else if (this.checkEtag(request, cacheKey)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        if (content == null) {
+            content = this.getCompiled(type, cacheKey);
+        }
+        HttpHeaders cacheHeaders = this.getCacheHeaders(cacheKey, etag);
+        if (cacheHeaders != null) {
+            headers.putAll(cacheHeaders);
+        }
+
+        if (encoder == null || content.length() < this.getCompressionMinLength()) {
+            return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        }
+        headers.set(HttpHeaders.CONTENT_ENCODING, encoder.getEncoding());
+        return new ResponseEntity<>(this.getEncoded(cacheKey, content, encoder), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Serves a bundle requested by its content hash. Only a hash that matches the
+     * current content is cached as immutable, any other hash (e.g. a page rendered
+     * before a redeploy) gets the current content with the usual revalidation
+     * headers.
+     */
+    protected ResponseEntity<?> getVersionedBundle(Types type, WebRequest request, String hash) {
+        if (!this.isFingerprinting()) {
+            return this.notFound();
+        }
+
+        ResponseEntity<?> response = this.getBundle(type, request);
+        if (response.getStatusCode() != HttpStatus.OK || !hash.equals(this.getBundleHash(type))) {
+            return response;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable");
+        return new ResponseEntity<>(response.getBody(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Hex content hash of the current user's compiled bundle. This is called for
+     * every rendered view so it never compiles, the hash is only available once
+     * the bundle is in the cache.
+     *
+     * @return <code>null</code> if caching is disabled or the bundle has not been
+     *         compiled yet
+     */
+    protected String getBundleHash(Types type) {
+        if (!this.isCaching()) {
+            return null;
+        }
+
+        String cacheKey = this.getBundleKey(type);
+        String content = this.getFromCache(cacheKey);
+        if (content == null) {
+            return null;
+        }
+        String etag = this.getContentETag(cacheKey, content);
+        return etag.substring(1, etag.length() - 1);
+    }
+
+    /**
+     * Content-hashed bundle URLs when fingerprinting is enabled. A bundle that is
+     * not cached (yet) gets its plain <code>/css</code> or <code>/js</code> URL.
+     *
+     * @return <code>null</code> if fingerprinting is disabled
+     */
+    @Override
+    public Map<String, String> getBundleUrls() {
+        if (!this.isFingerprinting()) {
+            return null;
+        }
+
+        String base = this.getContextPath();
+        if (base == null) {
+            base = "/";
+        }
+
+        Map<String, String> urls = new HashMap<>();
+        for (Types type : Arrays.asList(Types.css, Types.js)) {
+            String hash = this.getBundleHash(type);
+            if (hash == null) {
+                urls.put(type.name(), base + type.name());
+            } else {
+                urls.put(type.name(), base + type.name() + "/v/" + hash);
+            }
+        }
+        return Collections.unmodifiableMap(urls);
+    }
+
+    /**
+     * Picks the encoder with the highest <code>Accept-Encoding</code> quality,
+     * ties go to the earlier encoder in {@link #getContentEncoders()}.
+     *
+     * @return <code>null</code> if the content should be sent as-is
+     */
+    protected ContentEncoder getContentEncoder(WebRequest request) {
+        String header = request == null ? null : request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (header == null || header.trim().equals("")) {
+            return null;
+        }
+
+        Map<String, Double> accepted = new HashMap<>();
+        for (String token : header.split(",")) {
+            String[] parts = token.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException ex) {
+                        quality = 0;
+                    }
+                }
+            }
+            accepted.put(name, quality);
+        }
+
+        ContentEncoder best = null;
+        double bestQuality = 0;
+        for (ContentEncoder encoder : this.getContentEncoders()) {
+            Double quality = accepted.get(encoder.getEncoding().toLowerCase(Locale.ENGLISH));
+            if (quality == null) {
+                quality = accepted.get("*");
+            }
+            if (quality != null && quality > bestQuality) {
+                best = encoder;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the compiled, minified bundle from cache or builds it. Concurrent
+     * requests for a bundle that is not cached yet wait for a single build.
+     */
+    protected String getCompiled(Types type, String cacheKey) {
+        if (!this.isCaching()) {
+            return this.build(type);
+        }
+        return this.getCache().get(cacheKey, k -> this.build(type));
+    }
+
+    private String getBundleKey(Types type) {
+        if (type == null) {
+            throw new RuntimeException("Type cannot be null");
+        }
+
+        switch (type) {
+            case css:
+            case js:
+                /* valid, nothing to do */
+                break;
+            default:
+                throw new RuntimeException("This version of get() only supports CSS and JavaScript.");
+        }
+
+        String prefix = this.getCacheKeyPrefix();
+        if (prefix == null) {
+            prefix = "";
+        }
+        String theme = this.getUserTheme() == null ? null : this.getUserTheme().getName();
+        if (theme != null) {
+            prefix += theme;
+        }
+        return prefix + "-" + type.name();
+    }
+
+    /**
+     * Encoded bytes of <code>content</code>, re-encoded only when the content
+     * stored under <code>key</code> changes.
+     */
+    private byte[] getEncoded(String key, String content, ContentEncoder encoder) {
+        String encodedKey = key + ";" + encoder.getEncoding();
+        EncodedBundle current = this.getEncodedCache().get(encodedKey);
+        if (current != null && current.content == content) {
+            return current.bytes;
+        }
+
+        byte[] bytes = encoder.encode(content.getBytes(StandardCharsets.UTF_8));
+        if (this.isCaching()) {
+            this.getEncodedCache().put(encodedKey, new EncodedBundle(content, bytes));
+        }
+        return bytes;
+    }
+
+    /**
+     * When enabled resolver layers are searched and their files read
+     * concurrently on a pool of {@link #getCompileThreads()} threads. This mostly
+     * pays off when resources live on a slow (e.g. network) file system.
+     */
+    protected boolean isParallelCompile() {
+        return this.parallelCompile;
+    }
+
+    protected int getCompileThreads() {
+        return this.compileThreads;
+    }
+
+    private ExecutorService getCompilePool() {
+        ExecutorService current = this.compilePool;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.compilePool;
+                if (current == null) {
+                    current = Executors.newFixedThreadPool(Math.max(1, this.getCompileThreads()), r -> {
+                        Thread thread = new Thread(r, "resource-compile");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    this.compilePool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Concatenates the files of every resolver layer, layers in resolver order
+     * and files in the order each resolver lists them. When parallel compilation
+     * is enabled the searches and reads run concurrently, the order of the result
+     * does not change.
+     */
+    @Override
+    protected String compile(Types type) {
+        if (!this.isParallelCompile()) {
+            return super.compile(type);
+        }
+
+        ExecutorService pool = this.getCompilePool();
+        String theme = this.getUserTheme() == null ? null : this.getUserTheme().getName();
+        List<CompletableFuture<List<CompletableFuture<byte[]>>>> layers = this.searchLayers(type, theme). //
+                stream(). //
+                map(layer -> layer.thenApply(files -> files. //
+                        stream(). //
+                        map(file -> CompletableFuture.supplyAsync(() -> IoTools.readAbsoluteFile(file), pool)). //
+                        collect(Collectors.toList()))). //
+                collect(Collectors.toList());
+
+        StringBuilder sb = new StringBuilder();
+        for (CompletableFuture<List<CompletableFuture<byte[]>>> layer : layers) {
+            for (CompletableFuture<byte[]> file : this.join(layer)) {
+                sb.append(new String(this.join(file), StandardCharsets.UTF_8));
+                sb.append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The files of each resolver layer, in resolver order. Searched concurrently
+     * when parallel compilation is enabled. The pool threads are not part of the
+     * request, so theme resolvers search the <code>theme</code> the caller
+     * resolved and any other resolver must not depend on the request.
+     */
+    private List<CompletableFuture<List<String>>> searchLayers(Types type, String theme) {
+        List<CompletableFuture<List<String>>> layers = new ArrayList<>();
+        for (StaticResourceFileResolver resolver : this.getFileResolvers()) {
+            if (!this.isParallelCompile()) {
+                layers.add(CompletableFuture.completedFuture(this.findFiles(resolver, type)));
+            } else if (resolver instanceof ThemeResourceFileResolver) {
+                ThemeResourceFileResolver themeResolver = ((ThemeResourceFileResolver) resolver).forTheme(theme);
+                layers.add(CompletableFuture.supplyAsync(() -> this.findFiles(themeResolver, type), this.getCompilePool()));
+            } else {
+                layers.add(CompletableFuture.supplyAsync(() -> this.findFiles(resolver, type), this.getCompilePool()));
+            }
+        }
+        return layers;
+    }
+
+    private List<String> findFiles(StaticResourceFileResolver resolver, Types type) {
+        List<String> files = resolver.findFiles(type, p -> true);
+        return files == null ? Collections.emptyList() : files;
+    }
+
+    /**
+     * When enabled (and caching is enabled) every source file is kept as a
+     * fragment, see {@link #getFragment(Types, String, String)}. Rebuilding a
+     * bundle after one file changed only reads that file again, the bundle is
+     * then processed as a whole exactly like a full build.
+     */
+    protected boolean isIncrementalCompile() {
+        return this.incrementalCompile;
+    }
+
+    /**
+     * When enabled fragments are kept processed (values replaced and minified)
+     * on their own and the bundle is only joined from them, so a rebuild also
+     * only minifies the changed file. This is only safe for minifiers that treat
+     * every file on its own, a minifier that renames or removes code across files
+     * or adds <code>'use strict'</code> (e.g. Closure Compiler) produces a
+     * different, possibly broken, bundle this way.
+     */
+    protected boolean isMinifyPerFile() {
+        return this.minifyPerFile;
+    }
+
+    /**
+     * Fragments of bundle source files, bounded by {@link #getCacheMaxBytes()}.
+     */
+    private WeightedCache<FragmentKey, Fragment> getFragmentCache() {
+        WeightedCache<FragmentKey, Fragment> current = this.fragmentCache;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.fragmentCache;
+                if (current == null) {
+                    current = new WeightedCache<>(this.getCacheMaxBytes(), v -> 2L * v.content.length());
+                    this.fragmentCache = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * When parallel compilation is enabled only reading the changed files runs on
+     * the pool, values are replaced (and fragments minified) on the calling thread
+     * which is part of the request.
+     */
+    private String buildIncremental(Types type) {
+        String theme = this.getUserTheme() == null ? null : this.getUserTheme().getName();
+        List<String> files = new ArrayList<>();
+        this.searchLayers(type, theme).forEach(layer -> files.addAll(this.join(layer)));
+
+        List<Supplier<Fragment>> fragments = new ArrayList<>();
+        for (String file : files) {
+            FragmentKey key = new FragmentKey(type, theme, file);
+            if (this.isParallelCompile()) {
+                CompletableFuture<FragmentSource> future = CompletableFuture.supplyAsync(() -> this.readFragment(key), this.getCompilePool());
+                fragments.add(() -> this.toFragment(this.join(future)));
+            } else {
+                fragments.add(() -> this.toFragment(this.readFragment(key)));
+            }
+        }
+
+        if (!this.isMinifyPerFile()) {
+            /* same concatenation as compile(Types) */
+            StringBuilder sb = new StringBuilder();
+            for (Supplier<Fragment> fragment : fragments) {
+                sb.append(fragment.get().content);
+                sb.append("\n");
+            }
+            return this.minify(type, this.replaceValues(type, sb.toString()));
+        }
+
+        /*
+         * Fragments are minified on their own, a script may end without a semicolon
+         * and must not run into the next one
+         */
+        String separator = type == Types.js ? ";\n" : "\n";
+        StringBuilder sb = new StringBuilder();
+        for (Supplier<Fragment> fragment : fragments) {
+            sb.append(fragment.get().content);
+            sb.append(separator);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The contents of one source file for the given bundle type and theme,
+     * processed when {@link #isMinifyPerFile()}. The file is only read again when
+     * its last modified time or size changes and only processed again when its
+     * content hash changes. Files not on the file system (e.g. packaged in a jar)
+     * never change.
+     */
+    protected Fragment getFragment(Types type, String theme, String absolutePath) {
+        return this.toFragment(this.readFragment(new FragmentKey(type, theme, absolutePath)));
+    }
+
+    /**
+     * Reads the file of a fragment unless the cached fragment is still current.
+     * Does not depend on the request.
+     */
+    private FragmentSource readFragment(FragmentKey key) {
+        long lastModified = -1;
+        long size = -1;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(key.path), BasicFileAttributes.class);
+            if (attributes.isRegularFile()) {
+                lastModified = attributes.lastModifiedTime().toMillis();
+                size = attributes.size();
+            }
+        } catch (IOException | InvalidPathException ex) {
+            /* not a plain file */
+        }
+
+        Fragment current = this.getFragmentCache().get(key);
+        if (current != null && current.lastModified == lastModified && current.size == size) {
+            return new FragmentSource(key, current, null);
+        }
+
+        byte[] bytes = IoTools.readAbsoluteFile(key.path);
+        return new FragmentSource(key, current, new Fragment(lastModified, size, ContentHash.xxh64(bytes), new String(bytes, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Turns what {@link #readFragment(FragmentKey)} found into the current
+     * fragment, processing it (in the current request) when it changed.
+     */
+    private Fragment toFragment(FragmentSource source) {
+        if (source.read == null) {
+            return source.current;
+        }
+
+        Fragment read = source.read;
+        Fragment fragment;
+        if (source.current != null && source.current.hash == read.hash) {
+            fragment = new Fragment(read.lastModified, read.size, read.hash, source.current.content);
+        } else if (this.isMinifyPerFile()) {
+            Types type = source.key.type;
+            fragment = new Fragment(read.lastModified, read.size, read.hash, this.minify(type, this.replaceValues(type, read.content)));
+        } else {
+            fragment = read;
+        }
+        this.getFragmentCache().put(source.key, fragment);
+        return fragment;
+    }
+
+    private <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private String build(Types type) {
+        if (this.isIncrementalCompile() && this.isCaching()) {
+            return this.buildIncremental(type);
+        }
+
+        String content = this.compile(type);
+        content = this.replaceValues(type, content);
+        return this.minify(type, content);
+    }
+
+    /**
+     * Strong ETag for <code>content</code>. The hash is only recomputed when the
+     * content stored under <code>key</code> changes.
+     */
+    protected String getContentETag(String key, String content) {
+        ContentETag current = this.contentETags.get(key);
+        if (current != null && current.content == content) {
+            return current.etag;
+        }
+
+        String etag = ContentHash.etag(content);
+        if (this.isCaching()) {
+            this.contentETags.put(key, new ContentETag(content, etag));
+        }
+        return etag;
+    }
+
+    /**
+     * Strong ETag of a public l10n map. Entries are hashed in key order so every
+     * node produces the same value for the same text.
+     */
+    protected String getContentETag(Map<String, String> values) {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(values).forEach((k, v) -> sb.append(k).append('\u0000').append(v).append('\u0000'));
+        return ContentHash.etag(sb.toString());
+    }
+
+    /**
+     * Strong ETag of a static file. Files are hashed once and re-hashed only when
+     * their last modified time or size changes.
+     */
+    protected String getFileETag(String absolutePath) {
+        long lastModified = -1;
+        long size = -1;
+        try {
+            Path path = Paths.get(absolutePath);
+            if (Files.isRegularFile(path)) {
+                lastModified = Files.getLastModifiedTime(path).toMillis();
+                size = Files.size(path);
+            }
+        } catch (IOException | InvalidPathException ex) {
+            /* not a plain file (e.g. packaged in a jar), contents never change */
+        }
+
+        FileETag current = this.fileETags.get(absolutePath);
+        if (current != null && current.lastModified == lastModified && current.size == size) {
+            return current.etag;
+        }
+
+        String etag = ContentHash.etag(IoTools.readAbsoluteFile(absolutePath));
+        this.fileETags.put(absolutePath, new FileETag(lastModified, size, etag));
+        return etag;
+    }
+
+    protected ResponseEntity<InputStreamResource> getStreamResource(Types type, WebRequest request) {
+        if (request == null) {
+            return this.notFound();
+        }
+
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
         if (path == null || path.contains("..")) {
             return this.notFound();
         }
@@ -319,28 +1747,216 @@ public class ResourceController extends AbstractResourceResolver {
         }
 
         String cacheKey = prefix + "-" + type.name() + "-" + path;
-        if (this.checkEtag(request, cacheKey)) {
+        if (!this.isContentBasedETags() && this.checkEtag(request, cacheKey)) {
             return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         }
 
-        List<StaticResourceFileResolver> resolvers = this.getFileResolversReverse();
+        List<String> files = this.findStaticFiles(type, path);
+        if (files == null || files.size() != 1) {
+            return this.notFound();
+        }
+
+        String file = files.iterator().next();
+        String etag = null;
+        if (this.isContentBasedETags()) {
+            etag = this.getFileETag(file);
+            if (request.checkNotModified(etag)) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+        }
+
+        return this.withRange(request, this.respond(new ResourceStream(this.getFileResource(file)), matcher.group(1), cacheKey, etag));
+    }
+
+    /**
+     * Same as {@link #getStreamResource(Types, WebRequest)} but a file on disk is
+     * returned as the {@link FileSystemResource} itself rather than wrapped in a
+     * {@link ResourceStream}, for handlers declared as
+     * <code>ResponseEntity&lt;Resource&gt;</code> whose message converters can
+     * write a file without copying it through an {@link InputStream}.
+     */
+    protected ResponseEntity<Resource> getResource(Types type, WebRequest request) {
+        ResponseEntity<InputStreamResource> response = this.getStreamResource(type, request);
+        Resource content = response.getBody();
+        if (content instanceof ResourceStream) {
+            content = ((ResourceStream) content).getResource();
+        }
+        return new ResponseEntity<>(content, response.getHeaders(), response.getStatusCode());
+    }
+
+    /**
+     * Advertises byte ranges and evaluates <code>If-Range</code> for a full
+     * <code>200</code> response. When the range applies the response is passed on
+     * as-is and Spring MVC writes the single range (<code>206</code>), the
+     * <code>multipart/byteranges</code> body or the <code>416</code> for it. When
+     * <code>If-Range</code> does not match the current representation the full
+     * body is sent instead.
+     */
+    protected ResponseEntity<InputStreamResource> withRange(WebRequest request, ResponseEntity<InputStreamResource> response) {
+        InputStreamResource content = response.getBody();
+        if (response.getStatusCode() != HttpStatus.OK || !(content instanceof ResourceStream)) {
+            return response;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (((ResourceStream) content).getResource() instanceof FileSystemResource && headers.getLastModified() < 0) {
+            try {
+                headers.setLastModified(content.lastModified());
+            } catch (IOException ex) {
+                /* no date validator then */
+            }
+        }
+
+        String range = request == null ? null : request.getHeader(HttpHeaders.RANGE);
+        if (range == null) {
+            return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        }
+
+        if (this.isRangeValid(request.getHeader(HttpHeaders.IF_RANGE), headers)) {
+            /* length of the partial response is set when it is written */
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        }
+
+        /* a plain stream is never split into ranges */
+        try {
+            return new ResponseEntity<>(new InputStreamResource(content.getInputStream()), headers, HttpStatus.OK);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error reading resource", ex);
+        }
+    }
+
+    /**
+     * <code>If-Range</code> matches only a strong ETag or the exact
+     * <code>Last-Modified</code> date of the response. A missing header always
+     * matches.
+     */
+    private boolean isRangeValid(String ifRange, HttpHeaders headers) {
+        if (ifRange == null) {
+            return true;
+        }
+
+        String value = ifRange.trim();
+        if (value.startsWith("\"")) {
+            return value.equals(headers.getETag());
+        }
+        if (value.startsWith("W/")) {
+            return false;
+        }
+
+        long lastModified = headers.getLastModified();
+        if (lastModified < 0) {
+            return false;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() == lastModified;
+        } catch (DateTimeParseException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds the file for a request path, the last resolver layer with exactly one
+     * match wins.
+     */
+    protected List<String> findStaticFiles(Types type, String path) {
         List<String> files = null;
-        for (StaticResourceFileResolver resolver : resolvers) {
+        if (this.isCaching() && this.isStaticIndex()) {
+            for (Map<String, List<String>> layer : this.getStaticIndex(type).layers) {
+                files = layer == null ? null : layer.getOrDefault(path, Collections.emptyList());
+                if (files != null && files.size() == 1) {
+                    break;
+                }
+            }
+            return files;
+        }
+
+        for (StaticResourceFileResolver resolver : this.getFileResolversReverse()) {
             files = resolver.findFiles(type, p -> p.toString().replace("\\", "/").endsWith(path));
             if (files != null && files.size() == 1) {
                 break;
             }
         }
+        return files;
+    }
 
-        if (files == null || files.size() != 1) {
-            return this.notFound();
+    private StaticIndex getStaticIndex(Types type) {
+        String theme = this.getUserTheme() == null ? null : this.getUserTheme().getName();
+        String key = (theme == null ? "" : theme) + "|" + type.name();
+
+        StaticIndex index = this.staticIndexes.get(key);
+        long refresh = this.getStaticIndexRefreshSeconds() * 1000L;
+        if (index != null && refresh > 0 && System.currentTimeMillis() - index.built > refresh) {
+            this.staticIndexes.remove(key, index);
+            index = null;
+        }
+        if (index == null) {
+            index = this.staticIndexes.computeIfAbsent(key, k -> this.buildStaticIndex(type));
         }
+        return index;
+    }
 
-        return this.respond(new InputStreamResource(IoTools.readAbsoluteStream(files.iterator().next())), matcher.group(1), cacheKey);
+    private StaticIndex buildStaticIndex(Types type) {
+        List<Map<String, List<String>>> layers = new ArrayList<>();
+        for (StaticResourceFileResolver resolver : this.getFileResolversReverse()) {
+            List<String> files = resolver.findFiles(type, p -> true);
+            if (files == null) {
+                layers.add(null);
+                continue;
+            }
+
+            Map<String, List<String>> layer = new HashMap<>();
+            for (String file : files) {
+                String normalized = file.replace("\\", "/");
+                Set<String> suffixes = new HashSet<>();
+                suffixes.add(normalized);
+                for (int i = normalized.indexOf('/'); i >= 0; i = normalized.indexOf('/', i + 1)) {
+                    suffixes.add(normalized.substring(i));
+                    suffixes.add(normalized.substring(i + 1));
+                }
+                suffixes.forEach(suffix -> layer.computeIfAbsent(suffix, k -> new ArrayList<>()).add(file));
+            }
+            layers.add(layer);
+        }
+        return new StaticIndex(System.currentTimeMillis(), Collections.unmodifiableList(layers));
+    }
+
+    /**
+     * Files on disk are served as {@link FileSystemResource}s so their length is
+     * known up front. Small files are served from memory when the static memory cache is enabled,
+     * anything not on the file system (e.g. packaged in a jar) is buffered.
+     */
+    protected Resource getFileResource(String absolutePath) {
+        Path path = null;
+        BasicFileAttributes attributes = null;
+        try {
+            path = Paths.get(absolutePath);
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException | InvalidPathException ex) {
+            /* not a plain file */
+        }
+
+        if (attributes == null || !attributes.isRegularFile()) {
+            return new ByteArrayResource(IoTools.readAbsoluteFile(absolutePath));
+        }
+
+        if (!this.isStaticMemoryCache() || attributes.size() > this.getStaticMemoryCacheMaxFileBytes()) {
+            return new FileSystemResource(path);
+        }
+
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        CachedFile cached = this.getFileCache().get( //
+                absolutePath, //
+                f -> f.lastModified == lastModified && f.size == size, //
+                k -> new CachedFile(lastModified, size, IoTools.readAbsoluteFile(k)));
+        return new ByteArrayResource(cached.bytes);
     }
 
     protected String getFromCache(String key) {
-        return this.cache.get(key);
+        return this.getCache().get(key);
     }
 
     protected ResponseEntity<String> getPageScript(WebRequest request, String page) {
@@ -355,34 +1971,47 @@ public class ResourceController extends AbstractResourceResolver {
         }
 
         String cacheKey = prefix + "-js-" + page;
-        if (this.checkEtag(request, cacheKey)) {
+        if (!this.isContentBasedETags() && this.checkEtag(request, cacheKey)) {
             return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         }
 
-        String script = this.getFromCache(cacheKey);
-        if (script == null) {
-            List<String> scripts = IoTools.listDir( //
-                    AbstractResourceResolver.LIBRARY_PATH + "js-templates/", //
-                    1, //
-                    path -> path.toString().endsWith("lib-page.js"));
-            byte[] bytes = IoTools.readAbsoluteFile(scripts.iterator().next());
-            script = new String(bytes, StandardCharsets.UTF_8);
-
-            if (this.isCaching()) {
-                this.putInCache(cacheKey, script);
-            }
+        String script;
+        if (this.isCaching()) {
+            script = this.getCache().get(cacheKey, k -> this.readPageTemplate());
+        } else {
+            script = this.readPageTemplate();
         }
         script = this.replaceValues(Types.js, script);
         script = script.replace("%Page%", page);
-        return this.respond(script, cacheKey);
+
+        String etag = null;
+        if (this.isContentBasedETags()) {
+            etag = ContentHash.etag(script);
+            if (request != null && request.checkNotModified(etag)) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+        }
+        return this.respond(script, cacheKey, etag);
+    }
+
+    private String readPageTemplate() {
+        List<String> scripts = IoTools.listDir( //
+                AbstractResourceResolver.LIBRARY_PATH + "js-templates/", //
+                1, //
+                path -> path.toString().endsWith("lib-page.js"));
+        byte[] bytes = IoTools.readAbsoluteFile(scripts.iterator().next());
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     protected ResponseEntity<PrimitiveMap<String>> getL10n(WebRequest request, String localeName, String prefix) {
-        Locale locale = null;
+        return this.getL10n(request, this.toLocale(localeName), prefix);
+    }
+
+    private Locale toLocale(String localeName) {
         if (localeName != null && !localeName.trim().equals("")) {
-            locale = Locale.forLanguageTag(localeName.replace("-", "_"));
+            return Locale.forLanguageTag(localeName.replace("-", "_"));
         }
-        return this.getL10n(request, locale, prefix);
+        return null;
     }
 
     protected ResponseEntity<PrimitiveMap<String>> getL10n(WebRequest request, Locale locale, String prefix) {
@@ -395,7 +2024,7 @@ public class ResourceController extends AbstractResourceResolver {
         }
 
         String key = "l10n/" + locale.toString() + "/" + prefix;
-        if (this.checkEtag(request, key)) {
+        if (!this.isContentBasedETags() && this.checkEtag(request, key)) {
             return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         }
 
@@ -404,7 +2033,252 @@ public class ResourceController extends AbstractResourceResolver {
             return this.notFound();
         }
 
-        return this.respond(new PrimitiveMap<>(values), key);
+        String etag = null;
+        if (this.isContentBasedETags()) {
+            etag = this.getContentETag(values);
+            if (request != null && request.checkNotModified(etag)) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+        }
+        return this.respond(new PrimitiveMap<>(values), key, etag);
+    }
+
+    /**
+     * When enabled public l10n text is served as cached, ready to write JSON
+     * bytes, see {@link #getSerializedL10n(WebRequest, Locale, String)}.
+     */
+    protected boolean isSerializedL10n() {
+        return this.serializedL10n;
+    }
+
+    /**
+     * Serialized public l10n text, bounded by {@link #getCacheMaxBytes()}.
+     */
+    private WeightedCache<String, SerializedL10n> getL10nCache() {
+        WeightedCache<String, SerializedL10n> current = this.l10nCache;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.l10nCache;
+                if (current == null) {
+                    /* JSON plus roughly the same again for the values */
+                    current = new WeightedCache<>(this.getCacheMaxBytes(), v -> 2L * v.json.length);
+                    this.l10nCache = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Same as {@link #getL10n(WebRequest, Locale, String)} but the body is the
+     * UTF-8 JSON document itself (with <code>Content-Length</code> and a strong
+     * ETag of those bytes) instead of a map for the message converters to
+     * serialize. The JSON, its ETag and its compressed variants are cached per
+     * locale and prefix until {@link #clearCache()} or an
+     * {@link L10NChangedEvent}.
+     */
+    protected ResponseEntity<?> getSerializedL10n(WebRequest request, Locale locale, String prefix) {
+        if (this.getL10N() == null) {
+            return this.notFound();
+        }
+
+        if (locale == null || !this.getL10N().hasLocale(locale)) {
+            locale = this.getL10N().getDefaultLocale();
+        }
+
+        String key = "l10n/" + locale.toString() + "/" + prefix;
+        return this.respondJson(request, key, this.getSerializedL10n(key, locale, prefix));
+    }
+
+    /**
+     * The public text of several prefixes as one JSON document, served (and
+     * cached) the same way as {@link #getSerializedL10n(WebRequest, Locale, String)}.
+     * The order and repetition of prefixes does not matter and prefixes without
+     * text are ignored, so the document of the remaining prefixes is shared. More
+     * than {@link #getL10nMaxPrefixes()} distinct prefixes are rejected.
+     */
+    protected ResponseEntity<?> getMergedL10n(WebRequest request, Locale locale, Collection<String> prefixes) {
+        if (this.getL10N() == null || prefixes == null) {
+            return this.notFound();
+        }
+
+        Set<String> unique = new TreeSet<>();
+        for (String prefix : prefixes) {
+            if (prefix != null && !prefix.trim().equals("")) {
+                unique.add(prefix.trim());
+                if (unique.size() > this.getL10nMaxPrefixes()) {
+                    return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                }
+            }
+        }
+        if (unique.isEmpty()) {
+            return this.notFound();
+        }
+
+        if (locale == null || !this.getL10N().hasLocale(locale)) {
+            locale = this.getL10N().getDefaultLocale();
+        }
+
+        /*
+         * Each prefix is looked up (and cached) on its own first, only the ones with
+         * text become part of the merged key
+         */
+        Map<String, SerializedL10n> parts = new TreeMap<>();
+        for (String prefix : unique) {
+            SerializedL10n part = this.getSerializedL10n("l10n/" + locale.toString() + "/" + prefix, locale, prefix);
+            if (part != null) {
+                parts.put(prefix, part);
+            }
+        }
+        if (parts.isEmpty()) {
+            return this.notFound();
+        }
+
+        if (parts.size() == 1) {
+            String prefix = parts.keySet().iterator().next();
+            return this.respondJson(request, "l10n/" + locale.toString() + "/" + prefix, parts.get(prefix));
+        }
+
+        /*
+         * Merged documents get their own namespace and escaped separators so they
+         * never share a key with a single prefix (or other prefixes) containing ","
+         */
+        String key = "l10n-merged/" + locale.toString() + "/" + parts.keySet().stream() //
+                .map(prefix -> prefix.replace("\\", "\\\\").replace(",", "\\,")) //
+                .collect(Collectors.joining(","));
+        return this.respondJson(request, key, this.getSerializedL10n(key, () -> {
+            Map<String, String> values = new HashMap<>();
+            parts.values().forEach(part -> values.putAll(part.values));
+            return values;
+        }));
+    }
+
+    private SerializedL10n getSerializedL10n(String key, Locale locale, String prefix) {
+        return this.getSerializedL10n(key, () -> this.getL10N().getPublicText(locale, prefix));
+    }
+
+    private SerializedL10n getSerializedL10n(String key, Supplier<Map<String, String>> values) {
+        if (this.isCaching()) {
+            return this.getL10nCache().get(key, k -> this.serialize(values.get()));
+        }
+        return this.serialize(values.get());
+    }
+
+    /**
+     * Forgets the serialized l10n text, it is read from {@link L10N} again on
+     * next use.
+     */
+    @EventListener
+    public void onL10NChanged(L10NChangedEvent event) {
+        this.getL10nCache().clear();
+    }
+
+    private ResponseEntity<?> respondJson(WebRequest request, String key, SerializedL10n serialized) {
+        if (serialized == null) {
+            return this.notFound();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        ContentEncoder encoder = null;
+        if (this.isCompression()) {
+            headers.setVary(Arrays.asList(HttpHeaders.ACCEPT_ENCODING));
+            if (serialized.json.length >= this.getCompressionMinLength()) {
+                encoder = this.getContentEncoder(request);
+            }
+        }
+
+        String etag = serialized.etag;
+        if (encoder != null) {
+            /* strong ETags must differ per encoding */
+            etag = etag.substring(0, etag.length() - 1) + "-" + encoder.getEncoding() + "\"";
+        }
+        if (request != null && request.checkNotModified(etag)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        headers.putAll(this.getCacheHeaders(key, etag));
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        byte[] body = serialized.json;
+        if (encoder != null) {
+            ContentEncoder selected = encoder;
+            body = serialized.encoded.computeIfAbsent(selected.getEncoding(), k -> selected.encode(serialized.json));
+            headers.set(HttpHeaders.CONTENT_ENCODING, encoder.getEncoding());
+        }
+        headers.setContentLength(body.length);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * @return <code>null</code> for no text, which is not cached
+     */
+    private SerializedL10n serialize(Map<String, String> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        byte[] json = this.toJson(values).getBytes(StandardCharsets.UTF_8);
+        return new SerializedL10n(Collections.unmodifiableMap(new HashMap<>(values)), json, ContentHash.etag(json));
+    }
+
+    /**
+     * A JSON object of <code>values</code> in key order, so the same text always
+     * produces the same bytes.
+     */
+    protected String toJson(Map<String, String> values) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        for (Map.Entry<String, String> e : new TreeMap<>(values).entrySet()) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            this.appendJson(sb, e.getKey());
+            sb.append(':');
+            this.appendJson(sb, e.getValue());
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private void appendJson(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
     }
 
     protected String minify(Types type, String content) {
@@ -428,37 +2302,42 @@ public class ResourceController extends AbstractResourceResolver {
     }
 
     protected String putInCache(String key, String value) {
-        return this.cache.put(key, value);
+        return this.getCache().put(key, value);
     }
 
     protected ResponseEntity<String> respond(String content, String etagId) {
-        HttpHeaders headers = null;
-        ETagService eTagService = this.getETagService();
-        if (eTagService != null) {
-            headers = new HttpHeaders();
-            headers.setCacheControl(CacheControl.noCache().cachePrivate());
-            headers.setETag(eTagService.getETag(etagId));
-        }
-        return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        return this.respond(content, etagId, null);
+    }
+
+    /**
+     * @param etag content based ETag, when <code>null</code> the
+     *             {@link ETagService} value for <code>etagId</code> is used
+     */
+    protected ResponseEntity<String> respond(String content, String etagId, String etag) {
+        return new ResponseEntity<>(content, this.getCacheHeaders(etagId, etag), HttpStatus.OK);
     }
 
     protected ResponseEntity<PrimitiveMap<String>> respond(PrimitiveMap<String> content, String etagId) {
-        HttpHeaders headers = null;
-        ETagService eTagService = this.getETagService();
-        if (eTagService != null) {
-            headers = new HttpHeaders();
-            headers.setCacheControl(CacheControl.noCache().cachePrivate());
-            headers.setETag(eTagService.getETag(etagId));
-        }
-        return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        return this.respond(content, etagId, null);
+    }
+
+    protected ResponseEntity<PrimitiveMap<String>> respond(PrimitiveMap<String> content, String etagId, String etag) {
+        return new ResponseEntity<>(content, this.getCacheHeaders(etagId, etag), HttpStatus.OK);
     }
 
     protected ResponseEntity<InputStreamResource> respond(InputStreamResource content, String fileType, String etagId) {
+        return this.respond(content, fileType, etagId, null);
+    }
+
+    /**
+     * <code>Content-Length</code> is set whenever the content is a
+     * {@link ResourceStream}, a plain stream's length is not known up front.
+     */
+    protected ResponseEntity<InputStreamResource> respond(InputStreamResource content, String fileType, String etagId, String etag) {
         HttpHeaders responseHeaders = new HttpHeaders();
-        ETagService eTagService = this.getETagService();
-        if (eTagService != null) {
-            responseHeaders.set(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
-            responseHeaders.set(HttpHeaders.ETAG, eTagService.getETag(etagId));
+        HttpHeaders cacheHeaders = this.getCacheHeaders(etagId, etag);
+        if (cacheHeaders != null) {
+            responseHeaders.putAll(cacheHeaders);
         }
 
         String mediaType = ResourceController.FILE_EXT_MEDIATYPES.get(fileType);
@@ -471,6 +2350,29 @@ public class ResourceController extends AbstractResourceResolver {
             responseHeaders.set(HttpHeaders.CONTENT_ENCODING, "gzip");
         }
 
+        if (content instanceof ResourceStream) {
+            try {
+                responseHeaders.setContentLength(content.contentLength());
+            } catch (IOException ex) {
+                throw new RuntimeException("Error reading resource length", ex);
+            }
+        }
+
         return new ResponseEntity<>(content, responseHeaders, HttpStatus.OK);
     }
+
+    private HttpHeaders getCacheHeaders(String etagId, String etag) {
+        if (etag == null) {
+            ETagService eTagService = this.getETagService();
+            if (eTagService == null) {
+                return null;
+            }
+            etag = eTagService.getETag(this.getETagId(etagId));
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        headers.setETag(etag);
+        return headers;
+    }
 }
@@ -15,8 +15,30 @@ public class ThemeResourceFileResolver extends StaticResourceFileResolver {
     @Autowired(required = false)
     private UserTheme userTheme;
 
+    private final int depth;
+    private final boolean fixedTheme;
+    private final String theme;
+
     public ThemeResourceFileResolver(String root, int depth) {
+        this(root, depth, false, null);
+    }
+
+    private ThemeResourceFileResolver(String root, int depth, boolean fixedTheme, String theme) {
         super(root, depth);
+        this.depth = depth;
+        this.fixedTheme = fixedTheme;
+        this.theme = theme;
+    }
+
+    /**
+     * A copy of this resolver that searches <code>theme</code> instead of the
+     * current user's theme, so it can be used outside of the request (e.g. on
+     * another thread).
+     */
+    public ThemeResourceFileResolver forTheme(String theme) {
+        ThemeResourceFileResolver resolver = new ThemeResourceFileResolver(this.getThemesRoot(), this.depth, true, theme);
+        resolver.pathNormalizer = this.getPathNormalizer();
+        return resolver;
     }
 
     @Override
@@ -41,6 +63,10 @@ public class ThemeResourceFileResolver extends StaticResourceFileResolver {
     }
 
     private String getTheme() {
+        if (this.fixedTheme) {
+            return this.theme;
+        }
+
         if (this.getUserTheme() == null) {
             return null;
         }
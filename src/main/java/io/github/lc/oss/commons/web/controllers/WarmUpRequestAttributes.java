@@ -0,0 +1,66 @@
+package io.github.lc.oss.commons.web.controllers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.web.context.request.AbstractRequestAttributes;
+import org.springframework.web.context.request.RequestAttributes;
+
+/**
+ * Stand-in request (and session) scope for work done outside of an HTTP request
+ * that still relies on request scoped beans such as {@link UserTheme}.
+ */
+class WarmUpRequestAttributes extends AbstractRequestAttributes {
+    private final Map<String, Object> request = new ConcurrentHashMap<>();
+    private final Map<String, Object> session = new ConcurrentHashMap<>();
+
+    @Override
+    public Object getAttribute(String name, int scope) {
+        return this.getScope(scope).get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value, int scope) {
+        this.getScope(scope).put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name, int scope) {
+        this.getScope(scope).remove(name);
+        this.removeRequestDestructionCallback(name);
+    }
+
+    @Override
+    public String[] getAttributeNames(int scope) {
+        return this.getScope(scope).keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback, int scope) {
+        this.registerRequestDestructionCallback(name, callback);
+    }
+
+    @Override
+    public Object resolveReference(String key) {
+        return null;
+    }
+
+    @Override
+    public String getSessionId() {
+        return "";
+    }
+
+    @Override
+    public Object getSessionMutex() {
+        return this.session;
+    }
+
+    @Override
+    protected void updateAccessedSessionAttributes() {
+        /* nothing to update */
+    }
+
+    private Map<String, Object> getScope(int scope) {
+        return scope == RequestAttributes.SCOPE_REQUEST ? this.request : this.session;
+    }
+}
@@ -1,57 +1,129 @@
 package io.github.lc.oss.commons.web.services;
 
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
-import io.github.lc.oss.commons.encoding.Encodings;
-import io.github.lc.oss.commons.hashing.Hashes;
+import io.github.lc.oss.commons.web.util.WeightedCache;
+
+public abstract class AbstractETagService implements ETagService, InitializingBean, DisposableBean {
+    private static final long HOUR = 60 * 60 * 1000;
 
-public abstract class AbstractETagService implements ETagService {
     private static class ETag {
         static final String FORMAT = "W/\"%s\"";
 
-        private final String id;
         private final long expiration;
         private final String value;
 
-        public ETag(Clock clock, String id, String version) {
-            if (clock == null) {
-                throw new RuntimeException("Clock cannot be null");
-            }
+        public ETag(String id, Hour hour) {
+            this.expiration = hour.expiration;
+            this.value = AbstractETagService.hash(id, hour);
+        }
 
-            if (version == null || version.trim().equals("")) {
-                throw new RuntimeException("Version cannot be blank");
-            }
+        public String getValue() {
+            return this.value;
+        }
+
+        /**
+         * Expired once its hour is over on the service's clock or on the system
+         * clock, so a clock that lags behind (e.g. a fixed one) gets the same value
+         * rebuilt instead of keeping it forever.
+         */
+        public boolean isExpired(long now) {
+            return now >= this.expiration || System.currentTimeMillis() > this.expiration;
+        }
+    }
 
-            this.id = id;
-            Instant hour = clock.instant().truncatedTo(ChronoUnit.HOURS);
-            this.expiration = hour.plus(1, ChronoUnit.HOURS).toEpochMilli();
-            String value = id + version + hour.toString();
-            this.value = String.format(ETag.FORMAT, Hashes.MD5.hash(value, Encodings.Base64));
+    /**
+     * Everything about an ETag that only changes once per hour. The encoded
+     * <code>version + hour</code> suffix is hashed after the id so it is only ever
+     * encoded once per hour.
+     */
+    private static class Hour {
+        private final long start;
+        private final long expiration;
+        private final String version;
+        private final byte[] suffix;
+
+        public Hour(Instant hour, String version) {
+            this.start = hour.toEpochMilli();
+            this.expiration = this.start + AbstractETagService.HOUR;
+            this.version = version;
+            this.suffix = (version + hour.toString()).getBytes(StandardCharsets.UTF_8);
         }
 
-        public String getId() {
-            return this.id;
+        public boolean isFor(long now, String version) {
+            return now >= this.start && now < this.expiration && this.version.equals(version);
         }
+    }
 
-        public String getValue() {
-            return this.value;
+    /**
+     * Per-thread buffers so that hashing an ASCII id allocates nothing but the
+     * resulting string.
+     */
+    private static class Scratch {
+        private final MessageDigest md5;
+        private final byte[] digest = new byte[16];
+        private final byte[] base64 = new byte[24];
+        private final byte[] value = new byte[28];
+        private byte[] text = new byte[128];
+
+        public Scratch() {
+            try {
+                this.md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException("MD5 is not available", ex);
+            }
+            this.value[0] = 'W';
+            this.value[1] = '/';
+            this.value[2] = '"';
+            this.value[27] = '"';
         }
+    }
 
-        public boolean isExpired() {
-            return System.currentTimeMillis() > this.expiration;
+    private static class Precomputed {
+        private final long start;
+        private final Map<String, ETag> etags;
+
+        public Precomputed(long start, Map<String, ETag> etags) {
+            this.start = start;
+            this.etags = etags;
         }
     }
 
-    private final Map<String, ETag> cache = new HashMap<>();
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final Object lock = new Object();
+    private volatile WeightedCache<String, ETag> cache;
+    private volatile Hour hour;
+    private volatile Precomputed precomputed;
+    private ScheduledExecutorService scheduler;
     @Value("${application.services.etag.enabled:true}")
     private boolean enabled;
+    @Value("${application.services.etag.max-entries:10000}")
+    private int maxEntries = 10000;
+    @Value("${application.services.etag.precompute.enabled:false}")
+    private boolean precomputeEnabled;
+    @Value("${application.services.etag.precompute.lead-seconds:60}")
+    private int precomputeLeadSeconds = 60;
 
     @Autowired(required = false)
     private Clock clock;
@@ -62,6 +134,34 @@ public abstract class AbstractETagService implements ETagService {
 
     protected abstract String getAppVersion();
 
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (!this.isPrecomputeEnabled()) {
+            return;
+        }
+
+        synchronized (this.lock) {
+            if (this.scheduler == null) {
+                this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "etag-precompute");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.scheduleNextPrecompute();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        synchronized (this.lock) {
+            if (this.scheduler != null) {
+                this.scheduler.shutdownNow();
+                this.scheduler = null;
+            }
+        }
+    }
+
     @Override
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
@@ -72,9 +172,169 @@ public abstract class AbstractETagService implements ETagService {
         return this.enabled;
     }
 
+    /**
+     * Maximum number of cached ETags, least recently used entries are evicted
+     * first. Zero or less means unbounded.
+     */
+    protected int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    protected boolean isPrecomputeEnabled() {
+        return this.precomputeEnabled;
+    }
+
+    /**
+     * How long before the top of the hour the next hour's ETags are computed.
+     */
+    protected int getPrecomputeLeadSeconds() {
+        return this.precomputeLeadSeconds;
+    }
+
+    /**
+     * The ids to precompute for the next hour. Defaults to every id currently
+     * cached, i.e. every bundle, l10n prefix and static file requested this hour.
+     * Subclasses may add ids that should be ready before their first request.
+     */
+    protected Collection<String> getPrecomputeKeys() {
+        return new ArrayList<>(this.getCache().keySet());
+    }
+
+    /**
+     * Computes the next hour's ETags for {@link #getPrecomputeKeys()} off the
+     * request path. The table replaces the previous one in a single write, once
+     * the hour turns requests pick their new ETag from it instead of hashing.
+     */
+    protected void precompute() {
+        Instant next = this.requireClock().instant().truncatedTo(ChronoUnit.HOURS).plus(1, ChronoUnit.HOURS);
+        Hour nextHour = new Hour(next, this.requireVersion());
+
+        Map<String, ETag> etags = new HashMap<>();
+        for (String id : this.getPrecomputeKeys()) {
+            etags.put(id, new ETag(id, nextHour));
+        }
+        this.precomputed = new Precomputed(nextHour.start, Collections.unmodifiableMap(etags));
+    }
+
+    private void scheduleNextPrecompute() {
+        long now = this.requireClock().millis();
+        long nextHour = now - Math.floorMod(now, AbstractETagService.HOUR) + AbstractETagService.HOUR;
+        long delay = Math.max(0, nextHour - this.getPrecomputeLeadSeconds() * 1000L - now);
+        /* if we are already inside the lead window aim for the hour after next */
+        if (delay == 0 && this.precomputed != null && this.precomputed.start == nextHour) {
+            delay = nextHour + AbstractETagService.HOUR - this.getPrecomputeLeadSeconds() * 1000L - now;
+        }
+
+        this.scheduler.schedule(() -> {
+            try {
+                this.precompute();
+            } finally {
+                synchronized (this.lock) {
+                    if (this.scheduler != null) {
+                        this.scheduleNextPrecompute();
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private WeightedCache<String, ETag> getCache() {
+        WeightedCache<String, ETag> current = this.cache;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.cache;
+                if (current == null) {
+                    current = new WeightedCache<>(this.getMaxEntries());
+                    this.cache = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Clock requireClock() {
+        Clock clock = this.getClock();
+        if (clock == null) {
+            throw new RuntimeException("Clock cannot be null");
+        }
+        return clock;
+    }
+
+    private String requireVersion() {
+        String version = this.getAppVersion();
+        if (version == null || version.trim().equals("")) {
+            throw new RuntimeException("Version cannot be blank");
+        }
+        return version;
+    }
+
+    private Hour getHour() {
+        long now = this.requireClock().millis();
+        String version = this.requireVersion();
+
+        Hour current = this.hour;
+        if (current == null || !current.isFor(now, version)) {
+            current = new Hour(Instant.ofEpochMilli(now).truncatedTo(ChronoUnit.HOURS), version);
+            this.hour = current;
+        }
+        return current;
+    }
+
+    private ETag createETag(String id) {
+        Hour current = this.getHour();
+        Precomputed table = this.precomputed;
+        if (table != null && table.start == current.start) {
+            ETag etag = table.etags.get(id);
+            if (etag != null) {
+                return etag;
+            }
+        }
+        return new ETag(id, current);
+    }
+
+    /**
+     * <code>W/"Base64(MD5(id + version + hour))"</code>, the same value
+     * <code>Hashes.MD5.hash(..., Encodings.Base64)</code> produces, without the
+     * intermediate strings.
+     */
+    private static String hash(String id, Hour hour) {
+        Scratch scratch = AbstractETagService.SCRATCH.get();
+        MessageDigest md5 = scratch.md5;
+        md5.reset();
+
+        int length = id.length();
+        boolean ascii = true;
+        if (scratch.text.length < length) {
+            scratch.text = new byte[Math.max(length, scratch.text.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+                break;
+            }
+            scratch.text[i] = (byte) c;
+        }
+        if (ascii) {
+            md5.update(scratch.text, 0, length);
+        } else {
+            md5.update(id.getBytes(StandardCharsets.UTF_8));
+        }
+        md5.update(hour.suffix);
+
+        try {
+            md5.digest(scratch.digest, 0, scratch.digest.length);
+        } catch (DigestException ex) {
+            throw new RuntimeException("Error computing ETag", ex);
+        }
+        Base64.getEncoder().encode(scratch.digest, scratch.base64);
+        System.arraycopy(scratch.base64, 0, scratch.value, 3, scratch.base64.length);
+        return new String(scratch.value, StandardCharsets.ISO_8859_1);
+    }
+
     @Override
     public void clearCache() {
-        this.cache.clear();
+        this.getCache().clear();
     }
 
     @Override
@@ -85,11 +345,8 @@ public abstract class AbstractETagService implements ETagService {
         }
 
         if (this.isEnabled()) {
-            ETag etag = this.cache.get(key);
-            if (etag == null || etag.isExpired()) {
-                etag = new ETag(this.getClock(), key, this.getAppVersion());
-                this.cache.put(etag.getId(), etag);
-            }
+            long now = this.requireClock().millis();
+            ETag etag = this.getCache().get(key, e -> !e.isExpired(now), k -> this.createETag(k));
             return etag.getValue();
         } else {
             return String.format(ETag.FORMAT, Long.toString(System.currentTimeMillis()) + "\"");
@@ -98,6 +355,8 @@ public abstract class AbstractETagService implements ETagService {
 
     @Override
     public void evictETag(String id) {
-        this.cache.remove(id);
+        if (id != null) {
+            this.getCache().remove(id);
+        }
     }
 }
@@ -0,0 +1,84 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Fully read, immutable copy of a response that can be handed to any number of
+ * callers. Each call to {@link #toResponse()} returns an independent
+ * {@link ClientHttpResponse} with its own headers and body stream.
+ */
+class BufferedResponse {
+    private final HttpStatusCode status;
+    private final HttpHeaders headers;
+    private final byte[] body;
+
+    /**
+     * Reads and closes <code>response</code>.
+     */
+    static BufferedResponse read(ClientHttpResponse response) throws IOException {
+        try {
+            byte[] body = StreamUtils.copyToByteArray(response.getBody());
+            return new BufferedResponse(response.getStatusCode(), response.getHeaders(), body);
+        } finally {
+            response.close();
+        }
+    }
+
+    BufferedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+        this.status = status;
+        this.headers = new HttpHeaders();
+        this.headers.putAll(headers);
+        this.body = body;
+    }
+
+    HttpStatusCode getStatusCode() {
+        return this.status;
+    }
+
+    HttpHeaders getHeaders() {
+        return this.headers;
+    }
+
+    byte[] getBody() {
+        return this.body;
+    }
+
+    ClientHttpResponse toResponse() {
+        final HttpHeaders copy = new HttpHeaders();
+        copy.putAll(this.headers);
+        return new ClientHttpResponse() {
+            @Override
+            public HttpStatusCode getStatusCode() {
+                return BufferedResponse.this.status;
+            }
+
+            @Override
+            public String getStatusText() {
+                HttpStatus resolved = HttpStatus.resolve(BufferedResponse.this.status.value());
+                return resolved == null ? "" : resolved.getReasonPhrase();
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return copy;
+            }
+
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(BufferedResponse.this.body);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
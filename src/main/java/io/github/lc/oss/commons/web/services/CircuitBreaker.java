@@ -0,0 +1,90 @@
+package io.github.lc.oss.commons.web.services;
+
+/**
+ * Simple consecutive-failure circuit breaker.
+ * <p>
+ * After <code>failureThreshold</code> consecutive failures the circuit opens
+ * and rejects calls for <code>openDuration</code> milliseconds. It then
+ * half-opens and lets a single probe call through: success closes the circuit,
+ * failure opens it again.
+ */
+public class CircuitBreaker {
+    public enum States {
+        Closed,
+        Open,
+        HalfOpen
+    }
+
+    private final int failureThreshold;
+    private final long openDuration;
+
+    private States state = States.Closed;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(int failureThreshold, long openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * @return <code>true</code> if the call may proceed. Every granted call must be
+     *         followed by exactly one of {@link #onSuccess()},
+     *         {@link #onFailure()} or {@link #release()}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (this.state) {
+            case Closed:
+                return true;
+            case Open:
+                if (this.currentTimeMillis() - this.openedAt < this.openDuration) {
+                    return false;
+                }
+                this.state = States.HalfOpen;
+                this.probing = true;
+                return true;
+            case HalfOpen:
+            default:
+                if (this.probing) {
+                    return false;
+                }
+                this.probing = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        this.state = States.Closed;
+        this.failures = 0;
+        this.probing = false;
+    }
+
+    public synchronized void onFailure() {
+        this.probing = false;
+        this.failures++;
+        if (this.state == States.HalfOpen || this.failures >= this.failureThreshold) {
+            this.state = States.Open;
+            this.openedAt = this.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Releases a granted call that was never attempted (e.g. rejected by a
+     * bulkhead) without counting it as success or failure.
+     */
+    public synchronized void release() {
+        this.probing = false;
+    }
+
+    public synchronized States getState() {
+        if (this.state == States.Open && this.currentTimeMillis() - this.openedAt >= this.openDuration) {
+            return States.HalfOpen;
+        }
+        return this.state;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
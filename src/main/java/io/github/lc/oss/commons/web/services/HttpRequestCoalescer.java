@@ -0,0 +1,160 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Single-flight execution for GET requests. Concurrent requests with the same
+ * method, URI and key headers share one in-flight exchange: the first caller
+ * executes it and buffers the response, every other caller waits and receives
+ * its own copy of that response (or the same error).
+ * <p>
+ * Conditional request headers are always part of the key so that a
+ * <code>304</code> is never handed to an unconditional caller, and credential
+ * headers are always part of the key so that a response is never handed to a
+ * different identity.
+ * <p>
+ * Waiting callers give up after the time returned by the max wait supplier,
+ * which is evaluated on the waiting caller's thread so that it can reflect that
+ * caller's own deadline.
+ */
+public class HttpRequestCoalescer implements ClientHttpRequestInterceptor {
+    private static final List<String> CONDITIONAL_HEADERS = Collections.unmodifiableList(Arrays.asList( //
+            HttpHeaders.IF_NONE_MATCH, //
+            HttpHeaders.IF_MODIFIED_SINCE));
+    private static final List<String> CREDENTIAL_HEADERS = Collections.unmodifiableList(Arrays.asList( //
+            HttpHeaders.AUTHORIZATION, //
+            HttpHeaders.COOKIE));
+
+    private final Map<String, CompletableFuture<BufferedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final List<String> keyHeaders;
+    private final LongSupplier maxWait;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param keyHeaders request headers whose values must match for two requests
+     *                   to be considered identical
+     */
+    public HttpRequestCoalescer(List<String> keyHeaders) {
+        this(keyHeaders, () -> 0);
+    }
+
+    /**
+     * @param keyHeaders request headers whose values must match for two requests
+     *                   to be considered identical
+     * @param maxWait    milliseconds a waiting caller may wait for the in-flight
+     *                   exchange, zero or less to wait as long as the exchange
+     *                   takes
+     */
+    public HttpRequestCoalescer(List<String> keyHeaders, LongSupplier maxWait) {
+        this.keyHeaders = keyHeaders == null ? Collections.emptyList() : Collections.unmodifiableList(keyHeaders);
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (request.getMethod() != HttpMethod.GET) {
+            return execution.execute(request, body);
+        }
+
+        String key = this.toKey(request);
+        CompletableFuture<BufferedResponse> leader = new CompletableFuture<>();
+        CompletableFuture<BufferedResponse> existing = this.inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            this.coalesced.increment();
+            return this.await(existing).toResponse();
+        }
+
+        this.executions.increment();
+        try {
+            BufferedResponse response = BufferedResponse.read(execution.execute(request, body));
+            leader.complete(response);
+            return response.toResponse();
+        } catch (IOException | RuntimeException ex) {
+            leader.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            this.inFlight.remove(key, leader);
+        }
+    }
+
+    public List<String> getKeyHeaders() {
+        return this.keyHeaders;
+    }
+
+    /**
+     * @return number of requests that were actually executed
+     */
+    public long getExecutions() {
+        return this.executions.sum();
+    }
+
+    /**
+     * @return number of requests that were served by another caller's exchange
+     */
+    public long getCoalesced() {
+        return this.coalesced.sum();
+    }
+
+    protected String toKey(HttpRequest request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.getMethod().name()).append(' ').append(request.getURI().toString());
+        HttpHeaders headers = request.getHeaders();
+        this.keyHeaders.forEach(h -> this.appendHeader(sb, headers, h));
+        HttpRequestCoalescer.CREDENTIAL_HEADERS.stream(). //
+                filter(h -> this.keyHeaders.stream().noneMatch(k -> k.equalsIgnoreCase(h))). //
+                forEach(h -> this.appendHeader(sb, headers, h));
+        HttpRequestCoalescer.CONDITIONAL_HEADERS.forEach(h -> this.appendHeader(sb, headers, h));
+        return sb.toString();
+    }
+
+    private void appendHeader(StringBuilder sb, HttpHeaders headers, String name) {
+        List<String> values = headers.get(name);
+        if (values != null) {
+            sb.append('\n').append(name.toLowerCase(Locale.ENGLISH)).append(':').append(String.join(",", values));
+        }
+    }
+
+    private BufferedResponse await(CompletableFuture<BufferedResponse> future) throws IOException {
+        long wait = this.maxWait.getAsLong();
+        try {
+            return wait > 0 ? future.get(wait, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException ex) {
+            throw new SocketTimeoutException("Timed out after " + wait + "ms waiting for in-flight request");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for in-flight request");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+}
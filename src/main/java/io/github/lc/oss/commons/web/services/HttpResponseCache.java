@@ -0,0 +1,291 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import io.github.lc.oss.commons.web.util.WeightedCache;
+
+/**
+ * Client side HTTP cache for GET requests made through {@link HttpService}.
+ * <ul>
+ * <li>Freshness comes from <code>Cache-Control: max-age</code> (less
+ * <code>Age</code>) or <code>Expires</code>.</li>
+ * <li>Responses with an <code>ETag</code> or <code>Last-Modified</code> are
+ * kept after they go stale and revalidated with
+ * <code>If-None-Match</code>/<code>If-Modified-Since</code>.</li>
+ * <li><code>no-store</code> and <code>Vary: *</code> responses are never
+ * stored; <code>no-cache</code> responses are always revalidated.</li>
+ * <li>Memory is bounded by total body size with LRU eviction.</li>
+ * </ul>
+ * Requests that carry their own conditional headers bypass the cache.
+ */
+public class HttpResponseCache implements ClientHttpRequestInterceptor {
+    /**
+     * Fixed per-entry overhead so that many empty bodies still count towards the
+     * size limit.
+     */
+    private static final int ENTRY_OVERHEAD = 512;
+
+    static class CachedResponse {
+        private final BufferedResponse response;
+        private final Map<String, String> vary;
+        private final long freshUntil;
+
+        CachedResponse(BufferedResponse response, Map<String, String> vary, long freshUntil) {
+            this.response = response;
+            this.vary = vary;
+            this.freshUntil = freshUntil;
+        }
+
+        boolean isFresh(long now) {
+            return now < this.freshUntil;
+        }
+
+        HttpHeaders getHeaders() {
+            return this.response.getHeaders();
+        }
+
+        boolean hasValidators() {
+            return this.getHeaders().getETag() != null || this.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED) != null;
+        }
+
+        boolean matches(HttpHeaders requestHeaders) {
+            for (Map.Entry<String, String> e : this.vary.entrySet()) {
+                if (!Objects.equals(e.getValue(), HttpResponseCache.joined(requestHeaders, e.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long getWeight() {
+            return this.response.getBody().length + HttpResponseCache.ENTRY_OVERHEAD;
+        }
+
+        ClientHttpResponse toResponse() {
+            return this.response.toResponse();
+        }
+    }
+
+    private final WeightedCache<String, CachedResponse> cache;
+    private final long maxEntrySize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+
+    public HttpResponseCache(long maxSize, long maxEntrySize) {
+        this.cache = new WeightedCache<>(maxSize, r -> r.getWeight());
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        HttpHeaders requestHeaders = request.getHeaders();
+        if (request.getMethod() != HttpMethod.GET || //
+                this.hasDirective(requestHeaders.getCacheControl(), "no-store") || //
+                requestHeaders.getIfNoneMatch().size() > 0 || //
+                requestHeaders.getFirst(HttpHeaders.IF_MODIFIED_SINCE) != null) //
+        {
+            return execution.execute(request, body);
+        }
+
+        String key = this.toKey(request);
+        long now = this.currentTimeMillis();
+        CachedResponse cached = this.cache.get(key);
+        if (cached != null && !cached.matches(requestHeaders)) {
+            cached = null;
+        }
+
+        if (cached != null) {
+            if (cached.isFresh(now) && !this.hasDirective(requestHeaders.getCacheControl(), "no-cache")) {
+                this.hits.increment();
+                return cached.toResponse();
+            }
+
+            if (cached.hasValidators()) {
+                String etag = cached.getHeaders().getETag();
+                if (etag != null) {
+                    requestHeaders.setIfNoneMatch(etag);
+                }
+                String lastModified = cached.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+                if (lastModified != null) {
+                    requestHeaders.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+                }
+            } else {
+                cached = null;
+            }
+        }
+
+        ClientHttpResponse response = execution.execute(request, body);
+        if (cached != null && response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+            this.revalidations.increment();
+            HttpHeaders merged = new HttpHeaders();
+            merged.putAll(cached.getHeaders());
+            merged.putAll(response.getHeaders());
+            response.close();
+
+            BufferedResponse refreshed = new BufferedResponse(cached.response.getStatusCode(), merged, cached.response.getBody());
+            CachedResponse updated = new CachedResponse(refreshed, cached.vary, this.getFreshUntil(merged, now));
+            this.cache.put(key, updated);
+            return updated.toResponse();
+        }
+
+        this.misses.increment();
+        if (!this.isCacheable(response)) {
+            return response;
+        }
+
+        long length = response.getHeaders().getContentLength();
+        if (length > this.maxEntrySize) {
+            return response;
+        }
+
+        BufferedResponse buffered = BufferedResponse.read(response);
+        HttpHeaders headers = buffered.getHeaders();
+        CachedResponse entry = new CachedResponse(buffered, this.getVary(headers, requestHeaders), this.getFreshUntil(headers, now));
+        if (buffered.getBody().length <= this.maxEntrySize) {
+            this.cache.put(key, entry);
+        }
+        return entry.toResponse();
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public long getRevalidations() {
+        return this.revalidations.sum();
+    }
+
+    public long getEvictions() {
+        return this.cache.getEvictions();
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    protected String toKey(HttpRequest request) {
+        /*
+         * Credentials are part of the key so that responses are never shared across
+         * identities
+         */
+        String auth = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        List<String> cookies = request.getHeaders().get(HttpHeaders.COOKIE);
+        return request.getURI().toString() + //
+                (auth == null ? "" : "|" + auth) + //
+                (cookies == null ? "" : "|cookie:" + String.join("; ", cookies));
+    }
+
+    private boolean isCacheable(ClientHttpResponse response) throws IOException {
+        if (response.getStatusCode().value() != HttpStatus.OK.value()) {
+            return false;
+        }
+
+        HttpHeaders headers = response.getHeaders();
+        if (this.hasDirective(headers.getCacheControl(), "no-store") || headers.getVary().contains("*")) {
+            return false;
+        }
+
+        long now = this.currentTimeMillis();
+        return this.getFreshUntil(headers, now) > now || //
+                headers.getETag() != null || //
+                headers.getFirst(HttpHeaders.LAST_MODIFIED) != null;
+    }
+
+    private long getFreshUntil(HttpHeaders headers, long now) {
+        String cacheControl = headers.getCacheControl();
+        if (this.hasDirective(cacheControl, "no-cache")) {
+            return now;
+        }
+
+        Long maxAge = this.getDirectiveValue(cacheControl, "max-age");
+        if (maxAge != null) {
+            long age = 0;
+            String ageHeader = headers.getFirst(HttpHeaders.AGE);
+            if (ageHeader != null) {
+                try {
+                    age = Long.parseLong(ageHeader.trim());
+                } catch (NumberFormatException ex) {
+                    age = 0;
+                }
+            }
+            return now + Math.max(0, maxAge - age) * 1000;
+        }
+
+        long expires = headers.getExpires();
+        if (expires > 0) {
+            long date = headers.getDate();
+            return now + Math.max(0, expires - (date > 0 ? date : now));
+        }
+
+        return now;
+    }
+
+    private Map<String, String> getVary(HttpHeaders responseHeaders, HttpHeaders requestHeaders) {
+        Map<String, String> vary = new HashMap<>();
+        for (String name : responseHeaders.getVary()) {
+            vary.put(name, HttpResponseCache.joined(requestHeaders, name));
+        }
+        return vary;
+    }
+
+    private boolean hasDirective(String cacheControl, String directive) {
+        if (cacheControl == null) {
+            return false;
+        }
+
+        return Arrays.stream(cacheControl.split(",")). //
+                map(d -> d.trim().toLowerCase(Locale.ENGLISH)). //
+                anyMatch(d -> d.equals(directive) || d.startsWith(directive + "="));
+    }
+
+    private Long getDirectiveValue(String cacheControl, String directive) {
+        if (cacheControl == null) {
+            return null;
+        }
+
+        for (String d : cacheControl.split(",")) {
+            String value = d.trim().toLowerCase(Locale.ENGLISH);
+            if (value.startsWith(directive + "=")) {
+                try {
+                    return Long.parseLong(value.substring(directive.length() + 1).replace("\"", "").trim());
+                } catch (NumberFormatException ex) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String joined(HttpHeaders headers, String name) {
+        List<String> values = headers.get(name);
+        return values == null ? null : String.join(",", values);
+    }
+}
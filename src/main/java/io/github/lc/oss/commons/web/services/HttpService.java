@@ -1,63 +1,589 @@
 package io.github.lc.oss.commons.web.services;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
 import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-public class HttpService {
+public class HttpService implements DisposableBean {
     private static final StringHttpMessageConverter UTF_8_CONVERTER = new StringHttpMessageConverter(
             StandardCharsets.UTF_8);
 
     protected static final int DEFAULT_TIMEOUT = 30 * 1000;
+    protected static final int DEFAULT_POOL_MAX_TOTAL = 100;
+    protected static final int DEFAULT_POOL_MAX_PER_ROUTE = 20;
+    protected static final int DEFAULT_POOL_EVICT_IDLE = 30 * 1000;
+    protected static final int DEFAULT_POOL_TIME_TO_LIVE = 5 * 60 * 1000;
+    protected static final int DEFAULT_KEEP_ALIVE = 60 * 1000;
+    protected static final int DEFAULT_ASYNC_MAX_CONCURRENT = 64;
+    protected static final Set<HttpMethod> IDEMPOTENT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList( //
+            HttpMethod.GET, //
+            HttpMethod.HEAD, //
+            HttpMethod.OPTIONS, //
+            HttpMethod.PUT, //
+            HttpMethod.DELETE, //
+            HttpMethod.TRACE)));
+    protected static final Set<Integer> RETRYABLE_STATUSES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList( //
+            502, //
+            503, //
+            504)));
 
     @Autowired(required = false)
     private CustomResponseErrorHandler customResponseErrorHandler;
+    @Autowired(required = false)
+    @Qualifier("httpServiceExecutor")
+    private Executor executor;
+
+    @Value("${application.services.http.pool.max-total:100}")
+    private int poolMaxTotal = HttpService.DEFAULT_POOL_MAX_TOTAL;
+    @Value("${application.services.http.pool.max-per-route:20}")
+    private int poolMaxPerRoute = HttpService.DEFAULT_POOL_MAX_PER_ROUTE;
+    @Value("${application.services.http.pool.evict-idle:30000}")
+    private int poolEvictIdle = HttpService.DEFAULT_POOL_EVICT_IDLE;
+    @Value("${application.services.http.pool.time-to-live:300000}")
+    private int poolTimeToLive = HttpService.DEFAULT_POOL_TIME_TO_LIVE;
+    @Value("${application.services.http.keep-alive:60000}")
+    private int keepAlive = HttpService.DEFAULT_KEEP_ALIVE;
+    @Value("${application.services.http.async.max-concurrent:64}")
+    private int asyncMaxConcurrent = HttpService.DEFAULT_ASYNC_MAX_CONCURRENT;
+    @Value("${application.services.http.async.pool-size:0}")
+    private int asyncPoolSize;
+    @Value("${application.services.http.resilience.enabled:false}")
+    private boolean resilienceEnabled;
+    @Value("${application.services.http.resilience.retry.max-attempts:3}")
+    private int retryMaxAttempts = 3;
+    @Value("${application.services.http.resilience.retry.backoff:100}")
+    private int retryBackoff = 100;
+    @Value("${application.services.http.resilience.retry.max-backoff:2000}")
+    private int retryMaxBackoff = 2000;
+    @Value("${application.services.http.resilience.circuit-breaker.failure-threshold:5}")
+    private int circuitBreakerFailureThreshold = 5;
+    @Value("${application.services.http.resilience.circuit-breaker.open-duration:30000}")
+    private int circuitBreakerOpenDuration = 30 * 1000;
+    @Value("${application.services.http.resilience.bulkhead.max-concurrent:20}")
+    private int bulkheadMaxConcurrent = 20;
+    @Value("${application.services.http.resilience.bulkhead.max-wait:0}")
+    private int bulkheadMaxWait;
+    @Value("${application.services.http.cache.enabled:false}")
+    private boolean cacheEnabled;
+    @Value("${application.services.http.cache.max-bytes:10485760}")
+    private long cacheMaxBytes = 10 * 1024 * 1024;
+    @Value("${application.services.http.cache.max-entry-bytes:1048576}")
+    private long cacheMaxEntryBytes = 1024 * 1024;
+    @Value("${application.services.http.coalescing.enabled:false}")
+    private boolean coalescingEnabled;
+    @Value("${application.services.http.coalescing.key-headers:Accept,Accept-Language,Authorization,Cookie}")
+    private String[] coalescingKeyHeaders = new String[] { HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_LANGUAGE, HttpHeaders.AUTHORIZATION,
+            HttpHeaders.COOKIE };
+
+    private final Object lock = new Object();
+    private volatile RestTemplate restTemplate;
+    private ClientHttpRequestFactory requestFactory;
+    private volatile Executor asyncExecutor;
+    private ExecutorService defaultExecutor;
+    private volatile Semaphore asyncPermits;
+    private final ThreadLocal<RequestConfig> callRequestConfig = new ThreadLocal<>();
+    private final ThreadLocal<RequestOptions> callOptions = new ThreadLocal<>();
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+    private volatile HttpResponseCache responseCache;
+    private volatile HttpRequestCoalescer requestCoalescer;
 
     public <T> ResponseEntity<T> call(HttpMethod method, String url, Map<String, String> headers, Class<T> responseType,
             Object body) {
-        HttpHeaders requestHeaders = new HttpHeaders();
-        if (headers != null) {
-            headers.forEach((k, v) -> requestHeaders.add(k, v));
+        return this.call(method, url, headers, responseType, body, null);
+    }
+
+    /**
+     * Same as {@link #call(HttpMethod, String, Map, Class, Object)} but with
+     * per-call timeouts and/or an absolute deadline.
+     */
+    public <T> ResponseEntity<T> call(HttpMethod method, String url, Map<String, String> headers, Class<T> responseType,
+            Object body, RequestOptions options) {
+        URI uri = this.toUri(url);
+        HttpEntity<Object> entity = new HttpEntity<>(body, this.toHeaders(headers));
+        if (options == null) {
+            return this.exchange(uri, method, entity, responseType, options);
         }
 
-        URI uri;
+        this.callOptions.set(options);
         try {
-            uri = new URI(url);
-        } catch (URISyntaxException ex) {
-            throw new RuntimeException("Invalid URL", ex);
+            return this.exchange(uri, method, entity, responseType, options);
+        } finally {
+            this.callOptions.remove();
+        }
+    }
+
+    /**
+     * Executes the call, wrapped in retries, a per-host circuit breaker and a
+     * per-host bulkhead when resilience is enabled.
+     * <p>
+     * Only idempotent methods are retried, and only on I/O errors or
+     * 502/503/504 responses. Any 5xx or I/O error counts as a circuit breaker
+     * failure. Calls rejected by an open circuit or a full bulkhead fail with
+     * {@link ResourceAccessException}.
+     */
+    protected <T> ResponseEntity<T> exchange(URI uri, HttpMethod method, HttpEntity<?> entity, Class<T> responseType,
+            RequestOptions options) {
+        if (!this.isResilienceEnabled()) {
+            return this.attempt(uri, method, entity, responseType, this.toRequestConfig(options));
+        }
+
+        String host = this.toHostKey(uri);
+        CircuitBreaker breaker = this.getCircuitBreaker(host);
+        Semaphore bulkhead = this.getBulkhead(host);
+        int maxAttempts = this.isIdempotent(method) ? Math.max(1, this.getRetryMaxAttempts()) : 1;
+        for (int attempt = 1;; attempt++) {
+            RequestConfig config = this.toRequestConfig(options);
+            this.acquire(bulkhead, host);
+            if (!breaker.tryAcquire()) {
+                bulkhead.release();
+                throw new ResourceAccessException("Circuit open for " + host);
+            }
+
+            ResponseEntity<T> response = null;
+            RestClientException error = null;
+            try {
+                response = this.attempt(uri, method, entity, responseType, config);
+            } catch (RestClientException ex) {
+                error = ex;
+            } catch (RuntimeException ex) {
+                breaker.release();
+                throw ex;
+            } finally {
+                bulkhead.release();
+            }
+
+            HttpStatusCode status = error == null ? response.getStatusCode() : this.getStatusCode(error);
+            boolean failed = error instanceof ResourceAccessException || status != null && status.is5xxServerError();
+            if (!failed) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+            }
+
+            boolean retryable = failed && (status == null || HttpService.RETRYABLE_STATUSES.contains(status.value()));
+            if (!retryable || attempt >= maxAttempts || !this.backoff(attempt, options)) {
+                if (error != null) {
+                    throw error;
+                }
+                return response;
+            }
+        }
+    }
+
+    /**
+     * Performs a single attempt using the given per-call config (if any). The
+     * config is computed right before each attempt so that any deadline budget
+     * reflects time already spent.
+     */
+    protected <T> ResponseEntity<T> attempt(URI uri, HttpMethod method, HttpEntity<?> entity, Class<T> responseType,
+            RequestConfig config) {
+        if (config == null) {
+            return this.getRestTemplate().exchange(uri, method, entity, responseType);
+        }
+
+        this.callRequestConfig.set(config);
+        try {
+            return this.getRestTemplate().exchange(uri, method, entity, responseType);
+        } finally {
+            this.callRequestConfig.remove();
+        }
+    }
+
+    /**
+     * Sleeps for an exponentially growing, jittered delay.
+     *
+     * @return <code>false</code> if the delay would run past the call's deadline
+     *         and no further attempt should be made
+     */
+    protected boolean backoff(int attempt, RequestOptions options) {
+        long max = Math.min(this.getRetryMaxBackoff(), (long) this.getRetryBackoff() << Math.min(attempt - 1, 20));
+        long delay = max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+
+        Duration remaining = options == null ? null : options.getRemaining();
+        if (remaining != null && remaining.toMillis() <= delay) {
+            return false;
+        }
+
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while waiting to retry");
+        }
+        return true;
+    }
+
+    private void acquire(Semaphore bulkhead, String host) {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(this.getBulkheadMaxWait(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            throw new ResourceAccessException("Bulkhead full for " + host);
+        }
+    }
+
+    private HttpStatusCode getStatusCode(RestClientException ex) {
+        if (ex instanceof HttpStatusCodeException) {
+            return ((HttpStatusCodeException) ex).getStatusCode();
+        }
+        return null;
+    }
+
+    protected boolean isIdempotent(HttpMethod method) {
+        return HttpService.IDEMPOTENT_METHODS.contains(method);
+    }
+
+    protected String toHostKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    protected CircuitBreaker getCircuitBreaker(String host) {
+        return this.circuitBreakers.computeIfAbsent(host,
+                k -> new CircuitBreaker(this.getCircuitBreakerFailureThreshold(), this.getCircuitBreakerOpenDuration()));
+    }
+
+    protected Semaphore getBulkhead(String host) {
+        return this.bulkheads.computeIfAbsent(host, k -> new Semaphore(Math.max(1, this.getBulkheadMaxConcurrent())));
+    }
+
+    /**
+     * Converts the per-call options into a request config, clamping every timeout
+     * to the time remaining before the deadline.
+     *
+     * @return <code>null</code> if there is nothing to override
+     * @throws ResourceAccessException if the deadline has already passed
+     */
+    @SuppressWarnings("deprecation")
+    protected RequestConfig toRequestConfig(RequestOptions options) {
+        if (options == null) {
+            return null;
+        }
+
+        Duration remaining = options.getRemaining();
+        if (remaining != null && (remaining.isZero() || remaining.isNegative())) {
+            throw new ResourceAccessException("Deadline exceeded");
+        }
+
+        Duration defaultTimeout = Duration.ofMillis(this.getTimeout());
+        Duration connect = this.clamp(options.getConnectTimeout(), defaultTimeout, remaining);
+        Duration response = this.clamp(options.getResponseTimeout(), defaultTimeout, remaining);
+        Duration socket = this.clamp(options.getSocketTimeout(), defaultTimeout, remaining);
+        if (socket.compareTo(response) < 0) {
+            response = socket;
+        }
+
+        return RequestConfig.custom(). //
+                setConnectionRequestTimeout(Timeout.ofMilliseconds(connect.toMillis())). //
+                setConnectTimeout(Timeout.ofMilliseconds(connect.toMillis())). //
+                setResponseTimeout(Timeout.ofMilliseconds(response.toMillis())). //
+                build();
+    }
+
+    private Duration clamp(Duration value, Duration defaultValue, Duration max) {
+        Duration result = value == null ? defaultValue : value;
+        if (max != null && result.compareTo(max) > 0) {
+            result = max;
+        }
+        return result;
+    }
+
+    /**
+     * Streams the response body to <code>consumer</code> without buffering it. The
+     * stream is only valid for the duration of the callback. The returned entity
+     * carries the response status and headers.
+     */
+    public ResponseEntity<Void> stream(HttpMethod method, String url, Map<String, String> headers, Object body,
+            Consumer<InputStream> consumer) {
+        RestTemplate rest = this.getRestTemplate();
+        return this.executeUnbuffered(this.toUri(url), method, rest.httpEntityCallback(new HttpEntity<>(body, this.toHeaders(headers))),
+                response -> {
+                    consumer.accept(response.getBody());
+                    return new ResponseEntity<Void>(response.getHeaders(), response.getStatusCode());
+                });
+    }
+
+    /**
+     * Executes the request and returns the open, unbuffered response. The caller
+     * owns the response and must close it to release the pooled connection.
+     */
+    public StreamingResponse open(HttpMethod method, String url, Map<String, String> headers, Object body) {
+        URI uri = this.toUri(url);
+        RestTemplate rest = this.getRestTemplate();
+        ClientHttpResponse response = null;
+        try {
+            ClientHttpRequest request = this.getUnbufferedRequestFactory().createRequest(uri, method);
+            rest.httpEntityCallback(new HttpEntity<>(body, this.toHeaders(headers))).doWithRequest(request);
+            response = request.execute();
+
+            ResponseErrorHandler errorHandler = rest.getErrorHandler();
+            if (errorHandler.hasError(response)) {
+                errorHandler.handleError(uri, method, response);
+            }
+            return new StreamingResponse(response);
+        } catch (IOException ex) {
+            if (response != null) {
+                response.close();
+            }
+            throw new ResourceAccessException("I/O error on " + method.name() + " request for \"" + uri + "\": " + ex.getMessage(), ex);
+        } catch (RuntimeException ex) {
+            if (response != null) {
+                response.close();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Streams <code>body</code> to the server using chunked transfer encoding. The
+     * stream is not closed by this method.
+     */
+    public <T> ResponseEntity<T> upload(HttpMethod method, String url, Map<String, String> headers, Class<T> responseType,
+            InputStream body) {
+        return this.doUpload(method, url, this.toHeaders(headers), responseType, body);
+    }
+
+    /**
+     * Streams the contents of <code>file</code> to the server without loading it
+     * into memory.
+     */
+    public <T> ResponseEntity<T> upload(HttpMethod method, String url, Map<String, String> headers, Class<T> responseType,
+            Path file) {
+        HttpHeaders requestHeaders = this.toHeaders(headers);
+        try (InputStream body = Files.newInputStream(file)) {
+            requestHeaders.setContentLength(Files.size(file));
+            return this.doUpload(method, url, requestHeaders, responseType, body);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error reading " + file, ex);
+        }
+    }
+
+    private <T> ResponseEntity<T> doUpload(HttpMethod method, String url, HttpHeaders requestHeaders, Class<T> responseType,
+            InputStream body) {
+        if (requestHeaders.getContentType() == null) {
+            requestHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        }
+
+        RestTemplate rest = this.getRestTemplate();
+        RequestCallback callback = request -> {
+            request.getHeaders().putAll(requestHeaders);
+            if (request instanceof StreamingHttpOutputMessage) {
+                ((StreamingHttpOutputMessage) request).setBody(out -> body.transferTo(out));
+            } else {
+                body.transferTo(request.getBody());
+            }
+        };
+        return this.executeUnbuffered(this.toUri(url), method, callback, rest.responseEntityExtractor(responseType));
+    }
+
+    /**
+     * Same as {@link RestTemplate#execute(URI, HttpMethod, RequestCallback, ResponseExtractor)}
+     * but bypasses the template's interceptors, which would otherwise buffer the
+     * whole request body in memory.
+     */
+    private <T> T executeUnbuffered(URI uri, HttpMethod method, RequestCallback callback, ResponseExtractor<T> extractor) {
+        RestTemplate rest = this.getRestTemplate();
+        try {
+            ClientHttpRequest request = this.getUnbufferedRequestFactory().createRequest(uri, method);
+            callback.doWithRequest(request);
+            try (ClientHttpResponse response = request.execute()) {
+                ResponseErrorHandler errorHandler = rest.getErrorHandler();
+                if (errorHandler.hasError(response)) {
+                    errorHandler.handleError(uri, method, response);
+                }
+                return extractor.extractData(response);
+            }
+        } catch (IOException ex) {
+            throw new ResourceAccessException("I/O error on " + method.name() + " request for \"" + uri + "\": " + ex.getMessage(), ex);
+        }
+    }
+
+    private ClientHttpRequestFactory getUnbufferedRequestFactory() {
+        RestTemplate rest = this.getRestTemplate();
+        return this.requestFactory == null ? rest.getRequestFactory() : this.requestFactory;
+    }
+
+    /**
+     * Non-blocking variant of
+     * {@link #call(HttpMethod, String, Map, Class, Object)}. The call runs on
+     * {@link #getExecutor()} (virtual threads by default) and counts against the
+     * global async concurrency limit.
+     */
+    public <T> CompletableFuture<ResponseEntity<T>> callAsync(HttpMethod method, String url, Map<String, String> headers,
+            Class<T> responseType, Object body) {
+        final Semaphore permits = this.getAsyncPermits();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ex);
+            }
+
+            try {
+                return this.call(method, url, headers, responseType, body);
+            } finally {
+                permits.release();
+            }
+        }, this.getExecutor());
+    }
+
+    /**
+     * Issues all requests concurrently (subject to the global async concurrency
+     * limit) and completes once every response has been received. Results are in
+     * the same order as the requests. If any call fails the returned future
+     * completes exceptionally.
+     */
+    public <T> CompletableFuture<List<ResponseEntity<T>>> callAll(List<HttpServiceRequest<T>> requests) {
+        List<CompletableFuture<ResponseEntity<T>>> futures = new ArrayList<>();
+        if (requests != null) {
+            for (HttpServiceRequest<T> r : requests) {
+                futures.add(this.callAsync(r.getMethod(), r.getUrl(), r.getHeaders(), r.getResponseType(), r.getBody()));
+            }
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])). //
+                thenApply(v -> futures.stream(). //
+                        map(f -> f.join()). //
+                        collect(Collectors.toList()));
+    }
+
+    /**
+     * Closes the shared client and its connection pool. The next call will lazily
+     * create a new one.
+     */
+    @Override
+    public void destroy() throws Exception {
+        ClientHttpRequestFactory factory;
+        ExecutorService executor;
+        synchronized (this.lock) {
+            factory = this.requestFactory;
+            executor = this.defaultExecutor;
+            this.requestFactory = null;
+            this.restTemplate = null;
+            this.defaultExecutor = null;
+            this.asyncExecutor = null;
+        }
+
+        if (executor != null) {
+            executor.shutdown();
         }
 
-        return this.createRestTemplate().exchange(uri, method, new HttpEntity<>(body, requestHeaders), responseType);
+        if (factory instanceof DisposableBean) {
+            ((DisposableBean) factory).destroy();
+        }
+    }
+
+    /**
+     * Creates the executor used by {@link #callAsync} when no
+     * <code>httpServiceExecutor</code> bean is available. Uses a virtual thread
+     * per task when the runtime supports it (Java 21+), otherwise falls back to a
+     * fixed pool of {@link #getAsyncPoolSize()} daemon platform threads.
+     */
+    protected ExecutorService createDefaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newFixedThreadPool(this.getAsyncPoolSize(), r -> {
+                Thread thread = new Thread(r, "http-service-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     protected ClientHttpRequestFactory createRequestFactory() {
         /*
          * Long standing Java bug - PATCH isn't supported by default :(
-         *
-         * Note: HttpClient is not reusable :(
          */
+        return new HttpComponentsClientHttpRequestFactory(this.createHttpClient()) {
+            @Override
+            protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+                RequestConfig config = HttpService.this.callRequestConfig.get();
+                if (config == null) {
+                    return super.createHttpContext(httpMethod, uri);
+                }
+
+                HttpClientContext context = HttpClientContext.create();
+                context.setRequestConfig(config);
+                return context;
+            }
+        };
+    }
+
+    protected CloseableHttpClient createHttpClient() {
         ConnectionConfig connConfig = ConnectionConfig.custom(). //
-                setConnectTimeout(Timeout.ofMicroseconds(this.getTimeout())). //
+                setConnectTimeout(Timeout.ofMilliseconds(this.getTimeout())). //
+                setTimeToLive(TimeValue.ofMilliseconds(this.getPoolTimeToLive())). //
                 build();
 
         SocketConfig socketConfig = SocketConfig.custom(). //
@@ -67,19 +593,37 @@ public class HttpService {
         PoolingHttpClientConnectionManager connManager = PoolingHttpClientConnectionManagerBuilder.create(). //
                 setDefaultSocketConfig(socketConfig). //
                 setDefaultConnectionConfig(connConfig). //
+                setMaxConnTotal(this.getPoolMaxTotal()). //
+                setMaxConnPerRoute(this.getPoolMaxPerRoute()). //
                 build();
 
         RequestConfig requestConfig = RequestConfig.custom(). //
                 setResponseTimeout(Timeout.ofMilliseconds(this.getTimeout())). //
                 build();
 
-        CloseableHttpClient client = HttpClientBuilder.create(). //
+        return HttpClientBuilder.create(). //
                 setDefaultRequestConfig(requestConfig). //
                 setConnectionManager(connManager). //
+                setKeepAliveStrategy(this.createKeepAliveStrategy()). //
+                evictExpiredConnections(). //
+                evictIdleConnections(TimeValue.ofMilliseconds(this.getPoolEvictIdle())). //
                 disableRedirectHandling(). //
                 build();
+    }
 
-        return new HttpComponentsClientHttpRequestFactory(client);
+    /**
+     * Honors the server's Keep-Alive header but never keeps a connection longer
+     * than {@link #getKeepAlive()}.
+     */
+    protected ConnectionKeepAliveStrategy createKeepAliveStrategy() {
+        final long max = this.getKeepAlive();
+        return (response, context) -> {
+            TimeValue duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            if (duration == null || duration.toMilliseconds() < 0 || duration.toMilliseconds() > max) {
+                return TimeValue.ofMilliseconds(max);
+            }
+            return duration;
+        };
     }
 
     protected RestTemplate createRestTemplate() {
@@ -91,6 +635,7 @@ public class HttpService {
         ClientHttpRequestFactory factory = this.createRequestFactory();
         if (factory != null) {
             rest.setRequestFactory(factory);
+            this.requestFactory = factory;
         }
 
         /*
@@ -98,13 +643,257 @@ public class HttpService {
          * get ISO_8859_1 instead of UTF-8 - which is a bug since JSON is UTF-8...
          */
         rest.getMessageConverters().add(0, HttpService.UTF_8_CONVERTER);
+
+        List<ClientHttpRequestInterceptor> interceptors = this.createInterceptors();
+        if (!interceptors.isEmpty()) {
+            rest.setInterceptors(interceptors);
+        }
+        return rest;
+    }
+
+    /**
+     * Interceptors applied to regular calls in the order returned. Streaming calls
+     * ({@link #stream(HttpMethod, String, Map, Object, Consumer)},
+     * {@link #open(HttpMethod, String, Map, Object)} and <code>upload</code>)
+     * bypass them.
+     */
+    protected List<ClientHttpRequestInterceptor> createInterceptors() {
+        List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+        HttpResponseCache cache = this.getResponseCache();
+        if (cache != null) {
+            interceptors.add(cache);
+        }
+        /*
+         * Coalescing sits behind the cache so that cache hits never wait on another
+         * caller and only real misses/revalidations are shared
+         */
+        HttpRequestCoalescer coalescer = this.getRequestCoalescer();
+        if (coalescer != null) {
+            interceptors.add(coalescer);
+        }
+        return interceptors;
+    }
+
+    /**
+     * @return the response cache or <code>null</code> if caching is disabled.
+     */
+    public HttpResponseCache getResponseCache() {
+        if (!this.isCacheEnabled()) {
+            return null;
+        }
+
+        HttpResponseCache cache = this.responseCache;
+        if (cache == null) {
+            synchronized (this.lock) {
+                cache = this.responseCache;
+                if (cache == null) {
+                    cache = new HttpResponseCache(this.getCacheMaxBytes(), this.getCacheMaxEntryBytes());
+                    this.responseCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the shared, long-lived template. It is created on first use and
+     * reused by every subsequent call so that pooled connections are actually
+     * reused.
+     */
+    protected RestTemplate getRestTemplate() {
+        RestTemplate rest = this.restTemplate;
+        if (rest == null) {
+            synchronized (this.lock) {
+                rest = this.restTemplate;
+                if (rest == null) {
+                    rest = this.createRestTemplate();
+                    this.restTemplate = rest;
+                }
+            }
+        }
         return rest;
     }
 
+    protected HttpHeaders toHeaders(Map<String, String> headers) {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        if (headers != null) {
+            headers.forEach((k, v) -> requestHeaders.add(k, v));
+        }
+        return requestHeaders;
+    }
+
+    protected URI toUri(String url) {
+        try {
+            return new URI(url);
+        } catch (URISyntaxException ex) {
+            throw new RuntimeException("Invalid URL", ex);
+        }
+    }
+
+    protected Executor getExecutor() {
+        if (this.executor != null) {
+            return this.executor;
+        }
+
+        Executor current = this.asyncExecutor;
+        if (current == null) {
+            synchronized (this.lock) {
+                current = this.asyncExecutor;
+                if (current == null) {
+                    this.defaultExecutor = this.createDefaultExecutor();
+                    current = this.defaultExecutor;
+                    this.asyncExecutor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    protected Semaphore getAsyncPermits() {
+        Semaphore permits = this.asyncPermits;
+        if (permits == null) {
+            synchronized (this.lock) {
+                permits = this.asyncPermits;
+                if (permits == null) {
+                    permits = new Semaphore(Math.max(1, this.getAsyncMaxConcurrent()));
+                    this.asyncPermits = permits;
+                }
+            }
+        }
+        return permits;
+    }
+
+    protected int getAsyncMaxConcurrent() {
+        return this.asyncMaxConcurrent;
+    }
+
+    /**
+     * Number of platform threads used by the fallback executor. Defaults to
+     * {@link #getAsyncMaxConcurrent()} since no more calls than that can run at
+     * once anyway.
+     */
+    protected int getAsyncPoolSize() {
+        int size = this.asyncPoolSize > 0 ? this.asyncPoolSize : this.getAsyncMaxConcurrent();
+        return Math.max(1, size);
+    }
+
+    protected boolean isResilienceEnabled() {
+        return this.resilienceEnabled;
+    }
+
+    protected int getRetryMaxAttempts() {
+        return this.retryMaxAttempts;
+    }
+
+    protected int getRetryBackoff() {
+        return this.retryBackoff;
+    }
+
+    protected int getRetryMaxBackoff() {
+        return this.retryMaxBackoff;
+    }
+
+    protected int getCircuitBreakerFailureThreshold() {
+        return this.circuitBreakerFailureThreshold;
+    }
+
+    protected int getCircuitBreakerOpenDuration() {
+        return this.circuitBreakerOpenDuration;
+    }
+
+    protected int getBulkheadMaxConcurrent() {
+        return this.bulkheadMaxConcurrent;
+    }
+
+    protected int getBulkheadMaxWait() {
+        return this.bulkheadMaxWait;
+    }
+
+    /**
+     * @return the single-flight coalescer or <code>null</code> if coalescing is
+     *         disabled.
+     */
+    public HttpRequestCoalescer getRequestCoalescer() {
+        if (!this.isCoalescingEnabled()) {
+            return null;
+        }
+
+        HttpRequestCoalescer coalescer = this.requestCoalescer;
+        if (coalescer == null) {
+            synchronized (this.lock) {
+                coalescer = this.requestCoalescer;
+                if (coalescer == null) {
+                    coalescer = new HttpRequestCoalescer(Arrays.asList(this.getCoalescingKeyHeaders()),
+                            this::getCoalescingMaxWait);
+                    this.requestCoalescer = coalescer;
+                }
+            }
+        }
+        return coalescer;
+    }
+
+    protected boolean isCoalescingEnabled() {
+        return this.coalescingEnabled;
+    }
+
+    protected String[] getCoalescingKeyHeaders() {
+        return this.coalescingKeyHeaders;
+    }
+
+    /**
+     * How long a coalesced call waits for another caller's in-flight exchange:
+     * the time left until the call's own deadline, otherwise its own connect plus
+     * response timeouts.
+     */
+    protected long getCoalescingMaxWait() {
+        RequestOptions options = this.callOptions.get();
+        Duration remaining = options == null ? null : options.getRemaining();
+        if (remaining != null) {
+            return Math.max(1, remaining.toMillis());
+        }
+
+        Duration defaultTimeout = Duration.ofMillis(this.getTimeout());
+        Duration connect = this.clamp(options == null ? null : options.getConnectTimeout(), defaultTimeout, null);
+        Duration response = this.clamp(options == null ? null : options.getResponseTimeout(), defaultTimeout, null);
+        return connect.plus(response).toMillis();
+    }
+
+    protected boolean isCacheEnabled() {
+        return this.cacheEnabled;
+    }
+
+    protected long getCacheMaxBytes() {
+        return this.cacheMaxBytes;
+    }
+
+    protected long getCacheMaxEntryBytes() {
+        return this.cacheMaxEntryBytes;
+    }
+
     public int getTimeout() {
         return HttpService.DEFAULT_TIMEOUT;
     }
 
+    protected int getPoolMaxTotal() {
+        return this.poolMaxTotal;
+    }
+
+    protected int getPoolMaxPerRoute() {
+        return this.poolMaxPerRoute;
+    }
+
+    protected int getPoolEvictIdle() {
+        return this.poolEvictIdle;
+    }
+
+    protected int getPoolTimeToLive() {
+        return this.poolTimeToLive;
+    }
+
+    protected int getKeepAlive() {
+        return this.keepAlive;
+    }
+
     protected ResponseErrorHandler getCustomResponseErrorHandler() {
         return this.customResponseErrorHandler;
     }
@@ -0,0 +1,49 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.util.Map;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * Immutable description of a single {@link HttpService} call, used for bulk
+ * execution via {@link HttpService#callAll(java.util.List)}.
+ */
+public class HttpServiceRequest<T> {
+    private final HttpMethod method;
+    private final String url;
+    private final Map<String, String> headers;
+    private final Class<T> responseType;
+    private final Object body;
+
+    public HttpServiceRequest(HttpMethod method, String url, Class<T> responseType) {
+        this(method, url, null, responseType, null);
+    }
+
+    public HttpServiceRequest(HttpMethod method, String url, Map<String, String> headers, Class<T> responseType, Object body) {
+        this.method = method;
+        this.url = url;
+        this.headers = headers;
+        this.responseType = responseType;
+        this.body = body;
+    }
+
+    public HttpMethod getMethod() {
+        return this.method;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    public Class<T> getResponseType() {
+        return this.responseType;
+    }
+
+    public Object getBody() {
+        return this.body;
+    }
+}
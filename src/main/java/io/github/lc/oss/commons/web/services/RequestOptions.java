@@ -0,0 +1,80 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Per-call overrides for {@link HttpService}. Any value left <code>null</code>
+ * falls back to the service defaults.
+ * <p>
+ * When a deadline is set every timeout is clamped to the time remaining until
+ * the deadline at the moment each attempt starts, so the budget shrinks as
+ * time is spent (including across retries).
+ * <p>
+ * Note: Apache HttpClient 5 applies the socket read timeout per request via the
+ * response timeout, so the effective per-call read timeout is the smaller of
+ * the socket and response timeouts.
+ */
+public class RequestOptions {
+    private Duration connectTimeout;
+    private Duration socketTimeout;
+    private Duration responseTimeout;
+    private Instant deadline;
+
+    public static RequestOptions withDeadline(Instant deadline) {
+        RequestOptions options = new RequestOptions();
+        options.setDeadline(deadline);
+        return options;
+    }
+
+    public static RequestOptions withTimeout(Duration timeout) {
+        RequestOptions options = new RequestOptions();
+        options.setConnectTimeout(timeout);
+        options.setSocketTimeout(timeout);
+        options.setResponseTimeout(timeout);
+        return options;
+    }
+
+    public Duration getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getSocketTimeout() {
+        return this.socketTimeout;
+    }
+
+    public void setSocketTimeout(Duration socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public Duration getResponseTimeout() {
+        return this.responseTimeout;
+    }
+
+    public void setResponseTimeout(Duration responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public Instant getDeadline() {
+        return this.deadline;
+    }
+
+    public void setDeadline(Instant deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return the time left until the deadline or <code>null</code> if no deadline
+     *         is set. May be zero or negative if the deadline has passed.
+     */
+    public Duration getRemaining() {
+        if (this.deadline == null) {
+            return null;
+        }
+        return Duration.between(Instant.now(), this.deadline);
+    }
+}
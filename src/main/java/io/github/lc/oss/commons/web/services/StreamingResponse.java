@@ -0,0 +1,42 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * An open, unbuffered response from
+ * {@link HttpService#open(org.springframework.http.HttpMethod, String, java.util.Map, Object)}.
+ * The underlying connection is held until {@link #close()} is called so callers
+ * must always close it, ideally via try-with-resources.
+ */
+public class StreamingResponse implements Closeable {
+    private final ClientHttpResponse response;
+    private final HttpStatusCode statusCode;
+
+    public StreamingResponse(ClientHttpResponse response) throws IOException {
+        this.response = response;
+        this.statusCode = response.getStatusCode();
+    }
+
+    public HttpStatusCode getStatusCode() {
+        return this.statusCode;
+    }
+
+    public HttpHeaders getHeaders() {
+        return this.response.getHeaders();
+    }
+
+    public InputStream getBody() throws IOException {
+        return this.response.getBody();
+    }
+
+    @Override
+    public void close() {
+        this.response.close();
+    }
+}
@@ -48,7 +48,7 @@ public class ThemeService {
 
     private String themeCookieId;
 
-    private Set<String> validThemes;
+    private volatile Set<String> validThemes;
 
     public String getCookieId() {
         if (this.themeCookieId == null) {
@@ -97,14 +97,30 @@ public class ThemeService {
             return false;
         }
 
-        if (this.validThemes == null) {
+        return this.getThemes().contains(name);
+    }
+
+    /**
+     * @return the names of all available themes
+     */
+    public Set<String> getThemes() {
+        Set<String> current = this.validThemes;
+        if (current == null) {
             Set<String> themes = new HashSet<>();
             themes.addAll(this.getThemes(this.getLibThemeResolver()));
             themes.addAll(this.getThemes(this.getAppThemeResolver()));
             themes.addAll(this.getThemes(this.getExtThemeResolver()));
-            this.validThemes = Collections.unmodifiableSet(themes);
+            current = Collections.unmodifiableSet(themes);
+            this.validThemes = current;
         }
-        return this.validThemes.contains(name);
+        return current;
+    }
+
+    /**
+     * Forgets the known themes, they are listed again on next use.
+     */
+    public void clearCache() {
+        this.validThemes = null;
     }
 
     private List<String> getThemes(ThemeResourceFileResolver resolver) {
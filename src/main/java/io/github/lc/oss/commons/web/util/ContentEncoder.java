@@ -0,0 +1,16 @@
+package io.github.lc.oss.commons.web.util;
+
+/**
+ * Encodes response bodies for a single HTTP <code>Content-Encoding</code>.
+ * Register implementations as beans to make additional encodings (e.g. Brotli)
+ * available to the resource controller; gzip is always available.
+ */
+public interface ContentEncoder {
+    /**
+     * @return the <code>Content-Encoding</code> token, e.g. <code>gzip</code> or
+     *         <code>br</code>
+     */
+    String getEncoding();
+
+    byte[] encode(byte[] data);
+}
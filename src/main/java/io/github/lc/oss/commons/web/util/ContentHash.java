@@ -0,0 +1,119 @@
+package io.github.lc.oss.commons.web.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fast, non-cryptographic content hashing (XXH64) for strong ETags. The same
+ * bytes always produce the same ETag, regardless of node, hour or application
+ * version.
+ */
+public class ContentHash {
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private ContentHash() {
+    }
+
+    public static long xxh64(byte[] data) {
+        return ContentHash.xxh64(data, 0, data.length, 0);
+    }
+
+    public static long xxh64(byte[] data, int offset, int length, long seed) {
+        int p = offset;
+        int end = offset + length;
+        long h;
+
+        if (length >= 32) {
+            long v1 = seed + ContentHash.PRIME64_1 + ContentHash.PRIME64_2;
+            long v2 = seed + ContentHash.PRIME64_2;
+            long v3 = seed;
+            long v4 = seed - ContentHash.PRIME64_1;
+            int limit = end - 32;
+            do {
+                v1 = ContentHash.round(v1, (long) ContentHash.LONG.get(data, p));
+                v2 = ContentHash.round(v2, (long) ContentHash.LONG.get(data, p + 8));
+                v3 = ContentHash.round(v3, (long) ContentHash.LONG.get(data, p + 16));
+                v4 = ContentHash.round(v4, (long) ContentHash.LONG.get(data, p + 24));
+                p += 32;
+            } while (p <= limit);
+
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = ContentHash.merge(h, v1);
+            h = ContentHash.merge(h, v2);
+            h = ContentHash.merge(h, v3);
+            h = ContentHash.merge(h, v4);
+        } else {
+            h = seed + ContentHash.PRIME64_5;
+        }
+
+        h += length;
+
+        while (p + 8 <= end) {
+            h ^= ContentHash.round(0, (long) ContentHash.LONG.get(data, p));
+            h = Long.rotateLeft(h, 27) * ContentHash.PRIME64_1 + ContentHash.PRIME64_4;
+            p += 8;
+        }
+
+        if (p + 4 <= end) {
+            h ^= (((int) ContentHash.INT.get(data, p)) & 0xFFFFFFFFL) * ContentHash.PRIME64_1;
+            h = Long.rotateLeft(h, 23) * ContentHash.PRIME64_2 + ContentHash.PRIME64_3;
+            p += 4;
+        }
+
+        while (p < end) {
+            h ^= (data[p] & 0xFFL) * ContentHash.PRIME64_5;
+            h = Long.rotateLeft(h, 11) * ContentHash.PRIME64_1;
+            p++;
+        }
+
+        h ^= h >>> 33;
+        h *= ContentHash.PRIME64_2;
+        h ^= h >>> 29;
+        h *= ContentHash.PRIME64_3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * @return a strong ETag, <code>"</code> + 16 hex digits + <code>"</code>
+     */
+    public static String etag(byte[] data) {
+        return ContentHash.toETag(ContentHash.xxh64(data));
+    }
+
+    /**
+     * Strong ETag of the UTF-8 encoding of <code>content</code>.
+     */
+    public static String etag(String content) {
+        return ContentHash.etag(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String toHex(long hash) {
+        String hex = Long.toHexString(hash);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    public static String toETag(long hash) {
+        return "\"" + ContentHash.toHex(hash) + "\"";
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * ContentHash.PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * ContentHash.PRIME64_1;
+    }
+
+    private static long merge(long acc, long value) {
+        acc ^= ContentHash.round(0, value);
+        return acc * ContentHash.PRIME64_1 + ContentHash.PRIME64_4;
+    }
+}
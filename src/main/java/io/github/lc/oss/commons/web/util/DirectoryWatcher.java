@@ -0,0 +1,137 @@
+package io.github.lc.oss.commons.web.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a directory tree (up to <code>depth</code> levels below the root) on a
+ * daemon thread and reports every created, modified or deleted path. Newly
+ * created directories are watched as well. If events were lost the directory
+ * they occurred in is reported instead.
+ */
+public class DirectoryWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    private static class Watched {
+        private final Path dir;
+        private final int depth;
+
+        public Watched(Path dir, int depth) {
+            this.dir = dir;
+            this.depth = depth;
+        }
+    }
+
+    private final Path root;
+    private final int depth;
+    private final Consumer<Path> listener;
+    private final Map<WatchKey, Watched> keys = new ConcurrentHashMap<>();
+    private WatchService service;
+    private Thread thread;
+
+    public DirectoryWatcher(Path root, int depth, Consumer<Path> listener) {
+        this.root = root;
+        this.depth = depth;
+        this.listener = listener;
+    }
+
+    public synchronized void start() throws IOException {
+        if (this.service != null) {
+            return;
+        }
+
+        this.service = this.root.getFileSystem().newWatchService();
+        this.register(this.root, this.depth);
+        this.thread = new Thread(this::run, "directory-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.service == null) {
+            return;
+        }
+
+        this.service.close();
+        this.thread.interrupt();
+        this.service = null;
+        this.thread = null;
+        this.keys.clear();
+    }
+
+    private void register(Path dir, int depth) throws IOException {
+        WatchKey key = dir.register(this.service, //
+                StandardWatchEventKinds.ENTRY_CREATE, //
+                StandardWatchEventKinds.ENTRY_DELETE, //
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.keys.put(key, new Watched(dir, depth));
+
+        if (depth > 0) {
+            try (Stream<Path> children = Files.list(dir)) {
+                for (Path child : (Iterable<Path>) children::iterator) {
+                    if (Files.isDirectory(child)) {
+                        this.register(child, depth - 1);
+                    }
+                }
+            }
+        }
+    }
+
+    private void run() {
+        WatchService service = this.service;
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+
+            Watched watched = this.keys.get(key);
+            if (watched != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    this.handle(watched, event);
+                }
+            }
+
+            if (!key.reset()) {
+                this.keys.remove(key);
+            }
+        }
+    }
+
+    private void handle(Watched watched, WatchEvent<?> event) {
+        Path changed = watched.dir;
+        if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+            changed = watched.dir.resolve((Path) event.context());
+        }
+
+        try {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && watched.depth > 0 && Files.isDirectory(changed)) {
+                this.register(changed, watched.depth - 1);
+            }
+            this.listener.accept(changed);
+        } catch (IOException | RuntimeException ex) {
+            DirectoryWatcher.logger.warn("Error handling change to " + changed, ex);
+        }
+    }
+}
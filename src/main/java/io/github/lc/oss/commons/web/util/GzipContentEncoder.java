@@ -0,0 +1,32 @@
+package io.github.lc.oss.commons.web.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip at best compression. Intended for content that is encoded once and
+ * served many times.
+ */
+public class GzipContentEncoder implements ContentEncoder {
+    @Override
+    public String getEncoding() {
+        return "gzip";
+    }
+
+    @Override
+    public byte[] encode(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, data.length / 3));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes) {
+            {
+                this.def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(data);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error gzipping content", ex);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.lc.oss.commons.web.util;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when the text served by {@link io.github.lc.oss.commons.l10n.L10N}
+ * may have changed (e.g. it reloaded or one of its external files changed).
+ * Everything derived from that text is dropped and built again on next use.
+ * Applications that reload L10N themselves should publish this event.
+ */
+public class L10NChangedEvent extends ApplicationEvent {
+    private static final long serialVersionUID = 1L;
+
+    public L10NChangedEvent(Object source) {
+        super(source);
+    }
+}
@@ -0,0 +1,310 @@
+package io.github.lc.oss.commons.web.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe cache bounded by total weight.
+ * <ul>
+ * <li>Reads are lock-free.</li>
+ * <li>Missing or invalid entries are loaded exactly once per key; concurrent
+ * callers for the same key wait for that single load. If the load fails the
+ * waiting callers retry it rather than sharing the failure.</li>
+ * <li>When the total weight exceeds the limit the least recently used entries
+ * are evicted until the cache is back under 90% of the limit.</li>
+ * </ul>
+ * A max weight of zero or less means unbounded.
+ */
+public class WeightedCache<K, V> {
+    private static class Entry<V> {
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        private volatile long lastAccess = System.nanoTime();
+        private volatile long weight;
+        /* the thread running the load, until it completes */
+        private volatile Thread loader;
+        /* guarded by this entry's monitor */
+        private boolean charged;
+        private boolean released;
+    }
+
+    /**
+     * An entry and its last access time at the moment eviction started, so
+     * concurrent reads cannot change the sort order while sorting.
+     */
+    private static class Candidate<K, V> {
+        private final K key;
+        private final Entry<V> entry;
+        private final long lastAccess;
+
+        public Candidate(K key, Entry<V> entry) {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+
+    private final Map<K, Entry<V>> map = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+
+    /**
+     * Creates a cache bounded by number of entries.
+     */
+    public WeightedCache(long maxEntries) {
+        this(maxEntries, v -> 1);
+    }
+
+    public WeightedCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @return the cached value or <code>null</code>. If the value is currently
+     *         being loaded this waits for the load to finish.
+     */
+    public V get(K key) {
+        Entry<V> entry = this.map.get(key);
+        if (entry == null) {
+            this.misses.increment();
+            return null;
+        }
+
+        V value = this.await(key, entry);
+        if (value == null) {
+            this.misses.increment();
+            return null;
+        }
+
+        entry.lastAccess = System.nanoTime();
+        this.hits.increment();
+        return value;
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        return this.get(key, null, loader);
+    }
+
+    /**
+     * Returns the cached value if it passes <code>isValid</code>, otherwise loads a
+     * new one. Only one caller performs the load; others wait for its result.
+     * <code>null</code> results are returned but not cached. A loader must not
+     * read its own key, doing so fails instead of waiting for itself forever.
+     */
+    public V get(K key, Predicate<V> isValid, Function<K, V> loader) {
+        while (true) {
+            Entry<V> entry = this.map.get(key);
+            if (entry != null) {
+                V value = this.await(key, entry);
+                if (value != null && (isValid == null || isValid.test(value))) {
+                    entry.lastAccess = System.nanoTime();
+                    this.hits.increment();
+                    return value;
+                }
+
+                Entry<V> fresh = new Entry<>();
+                if (this.map.replace(key, entry, fresh)) {
+                    this.release(entry);
+                    return this.load(key, fresh, loader);
+                }
+                continue;
+            }
+
+            Entry<V> fresh = new Entry<>();
+            if (this.map.putIfAbsent(key, fresh) == null) {
+                return this.load(key, fresh, loader);
+            }
+        }
+    }
+
+    /**
+     * @return the previous value, if any
+     */
+    public V put(K key, V value) {
+        if (value == null) {
+            return this.remove(key);
+        }
+
+        Entry<V> entry = new Entry<>();
+        entry.weight = this.weigher.applyAsLong(value);
+        entry.value.complete(value);
+        this.charge(entry);
+
+        Entry<V> old = this.map.put(key, entry);
+        if (old != null) {
+            this.release(old);
+        }
+        this.evictIfNeeded();
+        return old == null ? null : old.value.getNow(null);
+    }
+
+    public V remove(K key) {
+        Entry<V> entry = this.map.remove(key);
+        if (entry == null) {
+            return null;
+        }
+
+        this.release(entry);
+        return entry.value.getNow(null);
+    }
+
+    /**
+     * Removes every entry whose key matches <code>filter</code>.
+     */
+    public void removeIf(Predicate<K> filter) {
+        for (K key : this.map.keySet()) {
+            if (filter.test(key)) {
+                this.remove(key);
+            }
+        }
+    }
+
+    public void clear() {
+        for (Map.Entry<K, Entry<V>> e : this.map.entrySet()) {
+            if (this.map.remove(e.getKey(), e.getValue())) {
+                this.release(e.getValue());
+            }
+        }
+    }
+
+    public Set<K> keySet() {
+        return this.map.keySet();
+    }
+
+    public int size() {
+        return this.map.size();
+    }
+
+    public long getWeight() {
+        return this.weight.get();
+    }
+
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    private V load(K key, Entry<V> entry, Function<K, V> loader) {
+        this.misses.increment();
+
+        V value;
+        entry.loader = Thread.currentThread();
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error ex) {
+            /* waiters see null and retry instead of sharing this failure */
+            this.map.remove(key, entry);
+            entry.value.complete(null);
+            throw ex;
+        } finally {
+            entry.loader = null;
+        }
+
+        if (value == null) {
+            this.map.remove(key, entry);
+            entry.value.complete(null);
+            return null;
+        }
+
+        entry.weight = this.weigher.applyAsLong(value);
+        entry.lastAccess = System.nanoTime();
+        entry.value.complete(value);
+        this.charge(entry);
+        if (this.map.get(key) != entry) {
+            /* removed or replaced while loading */
+            this.release(entry);
+        }
+
+        this.evictIfNeeded();
+        return value;
+    }
+
+    private V await(K key, Entry<V> entry) {
+        if (!entry.value.isDone() && entry.loader == Thread.currentThread()) {
+            throw new RuntimeException("Recursive load of key '" + key + "'");
+        }
+        return entry.value.join();
+    }
+
+    /**
+     * Adds the entry's weight to the total, unless it has already been removed.
+     */
+    private void charge(Entry<V> entry) {
+        synchronized (entry) {
+            if (!entry.charged && !entry.released) {
+                entry.charged = true;
+                this.weight.addAndGet(entry.weight);
+            }
+        }
+    }
+
+    /**
+     * Subtracts the entry's weight from the total at most once, no matter how
+     * many paths (remove, replace, evict, load) race to drop it.
+     */
+    private void release(Entry<V> entry) {
+        synchronized (entry) {
+            entry.released = true;
+            if (entry.charged) {
+                entry.charged = false;
+                this.weight.addAndGet(-entry.weight);
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        if (this.maxWeight <= 0 || this.weight.get() <= this.maxWeight || !this.evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            List<Candidate<K, V>> candidates = new ArrayList<>();
+            for (Map.Entry<K, Entry<V>> e : this.map.entrySet()) {
+                if (e.getValue().value.isDone()) {
+                    candidates.add(new Candidate<>(e.getKey(), e.getValue()));
+                }
+            }
+
+            long target = this.maxWeight - this.maxWeight / 10;
+            candidates.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+            for (Candidate<K, V> c : candidates) {
+                if (this.weight.get() <= target) {
+                    break;
+                }
+
+                if (this.map.remove(c.key, c.entry)) {
+                    this.release(c.entry);
+                    this.evictions.increment();
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package io.github.lc.oss.commons.web.advice;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.junit.jupiter.api.Assertions;
@@ -16,6 +23,9 @@ import org.springframework.web.servlet.ModelAndView;
 import io.github.lc.oss.commons.l10n.L10N;
 import io.github.lc.oss.commons.l10n.UserLocale;
 import io.github.lc.oss.commons.testing.AbstractMockTest;
+import io.github.lc.oss.commons.web.controllers.BundleUrlProvider;
+import io.github.lc.oss.commons.web.util.L10NChangedEvent;
+import io.github.lc.oss.commons.web.util.WeightedCache;
 
 public class CommonAdviceTest extends AbstractMockTest {
     @Mock
@@ -84,6 +94,88 @@ public class CommonAdviceTest extends AbstractMockTest {
         Assertions.assertNotSame(vars, varsCached);
     }
 
+    @Test
+    public void test_getText_notCached_watch() {
+        this.advice.setCaching(false);
+        this.setField("watch", true, this.advice);
+        Map<String, String> text = new HashMap<>();
+        text.put("a", "A");
+        Mockito.when(this.l10n.getAll(Locale.ENGLISH)).thenReturn(text);
+
+        Map<String, String> all = this.advice.getText(Locale.ENGLISH);
+        Assertions.assertEquals("A", all.get("a"));
+        Assertions.assertSame(all, this.advice.getText(Locale.ENGLISH));
+
+        // not rebuilt until told
+        text.put("a", "B");
+        Assertions.assertSame(all, this.advice.getText(Locale.ENGLISH));
+        Mockito.verify(this.l10n, Mockito.times(1)).getAll(Locale.ENGLISH);
+
+        this.advice.onL10NChanged(new L10NChangedEvent(this));
+        Map<String, String> changed = this.advice.getText(Locale.ENGLISH);
+        Assertions.assertNotSame(all, changed);
+        Assertions.assertEquals("B", changed.get("a"));
+        Assertions.assertEquals("B", this.advice.getModel(Locale.ENGLISH).get("a"));
+        Assertions.assertSame(changed, this.advice.getText(Locale.ENGLISH));
+    }
+
+    @Test
+    public void test_getText_cached_changed() {
+        this.advice.setCaching(true);
+        Map<String, String> text = new HashMap<>();
+        text.put("a", "A");
+        Mockito.when(this.l10n.getAll(Locale.ENGLISH)).thenReturn(text);
+
+        Map<String, String> all = this.advice.getText(Locale.ENGLISH);
+        text.put("a", "B");
+        Assertions.assertSame(all, this.advice.getText(Locale.ENGLISH));
+
+        this.advice.onL10NChanged(new L10NChangedEvent(this));
+        Assertions.assertEquals("B", this.advice.getText(Locale.ENGLISH).get("a"));
+    }
+
+    @Test
+    public void test_getText_singleFlight() throws Exception {
+        this.advice.setCaching(true);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger builds = new AtomicInteger();
+        Mockito.when(this.l10n.getAll(Locale.ENGLISH)).thenAnswer(i -> {
+            builds.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return new HashMap<>();
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<String, String>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> this.advice.getText(Locale.ENGLISH)));
+            }
+            loading.await();
+            release.countDown();
+
+            Map<String, String> first = results.get(0).get();
+            for (Future<Map<String, String>> result : results) {
+                Assertions.assertSame(first, result.get());
+            }
+            Assertions.assertEquals(1, builds.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_getText_nullLocale() {
+        Map<String, String> text = new HashMap<>();
+        text.put("a", "A");
+        Mockito.when(this.l10n.getAll(null)).thenReturn(text);
+
+        Assertions.assertEquals("A", this.advice.getText(null).get("a"));
+        Assertions.assertTrue(this.advice.getVars(null).isEmpty());
+    }
+
     @Test
     public void test_getText() {
         Map<String, String> text = new HashMap<>();
@@ -182,4 +274,194 @@ public class CommonAdviceTest extends AbstractMockTest {
         ModelAndView result = (ModelAndView) this.advice.modelAndView(pjp);
         Assertions.assertSame(mv, result);
     }
+
+    @Test
+    public void test_modelAndView_withBundleUrls() {
+        ProceedingJoinPoint pjp = Mockito.mock(ProceedingJoinPoint.class);
+        ModelAndView mv = new ModelAndView();
+        Map<String, String> urls = new HashMap<>();
+        urls.put("css", "/css/v/0123456789abcdef");
+
+        BundleUrlProvider provider = Mockito.mock(BundleUrlProvider.class);
+        Mockito.when(provider.getBundleUrls()).thenReturn(urls);
+        this.setField("bundleUrlProvider", provider, this.advice);
+
+        try {
+            Mockito.when(pjp.proceed()).thenReturn(mv);
+        } catch (Throwable ex) {
+            Assertions.fail("Unexpected exception");
+        }
+        Mockito.when(this.userLocale.getLocale()).thenReturn(Locale.ENGLISH);
+        Mockito.when(this.l10n.getAll(Locale.ENGLISH)).thenReturn(new HashMap<>());
+
+        ModelAndView result = (ModelAndView) this.advice.modelAndView(pjp);
+        Assertions.assertSame(urls, result.getModel().get("bundleUrls"));
+
+        // fingerprinting disabled
+        Mockito.when(provider.getBundleUrls()).thenReturn(null);
+        mv.getModel().clear();
+        result = (ModelAndView) this.advice.modelAndView(pjp);
+        Assertions.assertFalse(result.getModel().containsKey("bundleUrls"));
+    }
+
+    @Test
+    public void test_getModel() {
+        this.advice.setCaching(true);
+        Map<String, String> text = new HashMap<>();
+        text.put("a", "A");
+        text.put("a.b", "A %Var%");
+        Mockito.when(this.l10n.getAll(Locale.ENGLISH)).thenReturn(text);
+
+        Map<String, String> model = this.advice.getModel(Locale.ENGLISH);
+        Assertions.assertEquals(2, model.size());
+        Assertions.assertEquals("A", model.get("a"));
+        Assertions.assertEquals("A %Var%", model.get("a_b"));
+        Assertions.assertSame(model, this.advice.getModel(Locale.ENGLISH));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> model.put("b", "B"));
+    }
+
+    @Test
+    public void test_modelAndView_snapshot() {
+        ProceedingJoinPoint pjp = Mockito.mock(ProceedingJoinPoint.class);
+        this.advice.setCaching(true);
+
+        try {
+            Mockito.when(pjp.proceed()).thenAnswer(i -> new ModelAndView());
+        } catch (Throwable ex) {
+            Assertions.fail("Unexpected exception");
+        }
+        Mockito.when(this.userLocale.getLocale()).thenReturn(Locale.ENGLISH);
+        Map<String, String> text = new HashMap<>();
+        text.put("a", "A");
+        text.put("a.b", "A %Var%");
+        Mockito.when(this.l10n.getAll(Locale.ENGLISH)).thenReturn(text);
+
+        // one attribute per message
+        ModelAndView result = (ModelAndView) this.advice.modelAndView(pjp);
+        Assertions.assertEquals(2, result.getModel().size());
+        Assertions.assertEquals("A", result.getModel().get("a"));
+        Assertions.assertEquals("A %Var%", result.getModel().get("a_b"));
+        Assertions.assertNull(result.getModel().get("text"));
+
+        // the shared snapshot as a single attribute
+        this.setField("modelAttribute", "text", this.advice);
+        result = (ModelAndView) this.advice.modelAndView(pjp);
+        Assertions.assertSame(this.advice.getModel(Locale.ENGLISH), result.getModel().get("text"));
+        Assertions.assertNull(result.getModel().get("a"));
+        Mockito.verify(this.l10n, Mockito.times(1)).getAll(Locale.ENGLISH);
+    }
+
+    @Test
+    public void test_getTemplateTokens() {
+        this.advice.setCaching(true);
+
+        Set<String> tokens = this.advice.getTemplateTokens("l10n-view");
+        Assertions.assertTrue(tokens.contains("messages_a"));
+        Assertions.assertTrue(tokens.contains("b_c"));
+        Assertions.assertFalse(tokens.contains("d"));
+        Assertions.assertSame(tokens, this.advice.getTemplateTokens("l10n-view"));
+
+        Assertions.assertNull(this.advice.getTemplateTokens(null));
+        Assertions.assertNull(this.advice.getTemplateTokens("redirect:/l10n-view"));
+        Assertions.assertNull(this.advice.getTemplateTokens("not-a-view"));
+        Assertions.assertNull(this.advice.getTemplateTokens("not-a-view"));
+
+        // scanned every time
+        this.advice.setCaching(false);
+        Assertions.assertNotSame(tokens, this.advice.getTemplateTokens("l10n-view"));
+        Assertions.assertEquals(tokens, this.advice.getTemplateTokens("l10n-view"));
+    }
+
+    @Test
+    public void test_getTemplateTokens_includes() {
+        this.advice.setCaching(true);
+
+        Set<String> tokens = this.advice.getTemplateTokens("l10n-layout");
+        // own, decorator and fragment tokens
+        Assertions.assertTrue(tokens.contains("e_f"));
+        Assertions.assertTrue(tokens.contains("messages_a"));
+        Assertions.assertTrue(tokens.contains("b_c"));
+        Assertions.assertTrue(tokens.contains("g"));
+        Assertions.assertFalse(tokens.contains("d"));
+
+        // computed or missing includes, everything
+        Assertions.assertNull(this.advice.getTemplateTokens("l10n-dynamic"));
+        Assertions.assertNull(this.advice.getTemplateTokens("l10n-missing"));
+    }
+
+    @Test
+    public void test_getTemplateTokens_bounded() {
+        this.advice.setCaching(true);
+        this.setField("templateScanMaxViews", 1, this.advice);
+
+        Set<String> tokens = this.advice.getTemplateTokens("l10n-view");
+        Assertions.assertSame(tokens, this.advice.getTemplateTokens("l10n-view"));
+        Assertions.assertNull(this.advice.getTemplateTokens("not-a-view"));
+
+        WeightedCache<String, ?> viewTokens = this.getField("viewTokens", this.advice);
+        Assertions.assertEquals(1, viewTokens.keySet().size());
+        Assertions.assertNotSame(tokens, this.advice.getTemplateTokens("l10n-view"));
+    }
+
+    @Test
+    public void test_modelAndView_templateScan_only() {
+        ProceedingJoinPoint pjp = Mockito.mock(ProceedingJoinPoint.class);
+        this.setField("templateScan", true, this.advice);
+
+        Mockito.when(this.userLocale.getLocale()).thenReturn(Locale.ENGLISH);
+        Map<String, String> text = new HashMap<>();
+        text.put("messages.a", "A");
+        text.put("b.c", "C");
+        text.put("e.f", "F");
+        text.put("g", "G");
+        text.put("d", "D");
+        Mockito.when(this.l10n.getAll(Locale.ENGLISH)).thenReturn(text);
+
+        try {
+            Mockito.when(pjp.proceed()).thenReturn(new ModelAndView("l10n-layout"));
+        } catch (Throwable ex) {
+            Assertions.fail("Unexpected exception");
+        }
+        ModelAndView result = (ModelAndView) this.advice.modelAndView(pjp);
+        Assertions.assertEquals(4, result.getModel().size());
+        Assertions.assertEquals("A", result.getModel().get("messages_a"));
+        Assertions.assertEquals("C", result.getModel().get("b_c"));
+        Assertions.assertEquals("F", result.getModel().get("e_f"));
+        Assertions.assertEquals("G", result.getModel().get("g"));
+        Assertions.assertNull(result.getModel().get("d"));
+    }
+
+    @Test
+    public void test_modelAndView_templateScan() {
+        ProceedingJoinPoint pjp = Mockito.mock(ProceedingJoinPoint.class);
+        this.advice.setCaching(true);
+        this.setField("templateScan", true, this.advice);
+
+        Mockito.when(this.userLocale.getLocale()).thenReturn(Locale.ENGLISH);
+        Map<String, String> text = new HashMap<>();
+        text.put("messages.a", "A");
+        text.put("b.c", "C");
+        text.put("d", "D");
+        Mockito.when(this.l10n.getAll(Locale.ENGLISH)).thenReturn(text);
+
+        try {
+            Mockito.when(pjp.proceed()).thenReturn(new ModelAndView("l10n-view"));
+        } catch (Throwable ex) {
+            Assertions.fail("Unexpected exception");
+        }
+        ModelAndView result = (ModelAndView) this.advice.modelAndView(pjp);
+        Assertions.assertEquals(2, result.getModel().size());
+        Assertions.assertEquals("A", result.getModel().get("messages_a"));
+        Assertions.assertEquals("C", result.getModel().get("b_c"));
+
+        // template not found, everything
+        try {
+            Mockito.when(pjp.proceed()).thenReturn(new ModelAndView("not-a-view"));
+        } catch (Throwable ex) {
+            Assertions.fail("Unexpected exception");
+        }
+        result = (ModelAndView) this.advice.modelAndView(pjp);
+        Assertions.assertEquals(3, result.getModel().size());
+        Assertions.assertEquals("D", result.getModel().get("d"));
+    }
 }
@@ -1,25 +1,44 @@
 package io.github.lc.oss.commons.web.controllers;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.HandlerMapping;
 
@@ -27,12 +46,18 @@ import io.github.lc.oss.commons.l10n.L10N;
 import io.github.lc.oss.commons.serialization.PrimitiveMap;
 import io.github.lc.oss.commons.testing.AbstractMockTest;
 import io.github.lc.oss.commons.util.IoTools;
+import io.github.lc.oss.commons.util.PathNormalizer;
 import io.github.lc.oss.commons.web.resources.AbstractResourceResolver;
 import io.github.lc.oss.commons.web.resources.AbstractResourceResolver.Types;
 import io.github.lc.oss.commons.web.resources.Minifier;
 import io.github.lc.oss.commons.web.resources.StaticResourceFileResolver;
 import io.github.lc.oss.commons.web.services.ETagService;
+import io.github.lc.oss.commons.web.services.ThemeService;
 import io.github.lc.oss.commons.web.tokens.CsrfTokenManager;
+import io.github.lc.oss.commons.web.util.ContentEncoder;
+import io.github.lc.oss.commons.web.util.ContentHash;
+import io.github.lc.oss.commons.web.util.L10NChangedEvent;
+import io.github.lc.oss.commons.web.util.WeightedCache;
 import jakarta.servlet.ServletContext;
 
 public class ResourceControllerTest extends AbstractMockTest {
@@ -40,6 +65,24 @@ public class ResourceControllerTest extends AbstractMockTest {
 
     }
 
+    private static class TestEncoder implements ContentEncoder {
+        private final String encoding;
+
+        public TestEncoder(String encoding) {
+            this.encoding = encoding;
+        }
+
+        @Override
+        public String getEncoding() {
+            return this.encoding;
+        }
+
+        @Override
+        public byte[] encode(byte[] data) {
+            return (this.encoding + ":" + new String(data, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
     @Test
     public void test_getConsoleLogPrefix_null() {
         ResourceController controller = new TestController();
@@ -542,6 +585,74 @@ public class ResourceControllerTest extends AbstractMockTest {
         Assertions.assertEquals(initialCss, result.getBody());
     }
 
+    @Test
+    public void test_cache() {
+        ResourceController controller = new TestController();
+        this.setField("cacheMaxBytes", 90L, controller);
+
+        Assertions.assertNull(controller.getFromCache("a"));
+        Assertions.assertNull(controller.putInCache("a", "0123456789"));
+        Assertions.assertEquals("0123456789", controller.putInCache("a", "abcdefghij"));
+        Assertions.assertEquals("abcdefghij", controller.getFromCache("a"));
+        Assertions.assertEquals(20, controller.getCache().getWeight());
+        Assertions.assertEquals(90, controller.getCache().getMaxWeight());
+        Assertions.assertEquals(1, controller.getCache().getHits());
+        Assertions.assertEquals(1, controller.getCache().getMisses());
+
+        controller.putInCache("b", "0123456789");
+        controller.putInCache("c", "0123456789");
+        controller.putInCache("d", "0123456789");
+        controller.putInCache("e", "0123456789");
+        Assertions.assertNull(controller.getFromCache("a"));
+        Assertions.assertEquals(1, controller.getCache().getEvictions());
+        Assertions.assertEquals(4, controller.getCache().size());
+
+        controller.clearCache();
+        Assertions.assertEquals(0, controller.getCache().size());
+        Assertions.assertEquals(0, controller.getCache().getWeight());
+    }
+
+    @Test
+    public void test_get_caching_singleFlight() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger builds = new AtomicInteger();
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected String minify(Types type, String content) {
+                builds.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                return "body{}";
+            }
+        };
+        this.setField("enableCaching", true, controller);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(pool.submit(() -> controller.getCompiled(Types.css, "-css")));
+            started.await();
+            for (int i = 0; i < 3; i++) {
+                results.add(pool.submit(() -> controller.getCompiled(Types.css, "-css")));
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                Assertions.assertEquals("body{}", result.get());
+            }
+            Assertions.assertEquals(1, builds.get());
+            Assertions.assertEquals(1, controller.getCache().getMisses());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     @Test
     public void test_get_notModified() {
         ETagService etagService = Mockito.mock(ETagService.class);
@@ -1404,4 +1515,1480 @@ public class ResourceControllerTest extends AbstractMockTest {
         Assertions.assertTrue(result.isEmpty());
         Assertions.assertSame(result, controller.getFileResolversReverse());
     }
+
+    @Test
+    public void test_get_contentBasedETags() {
+        final ETagService etagService = Mockito.mock(ETagService.class);
+        final WebRequest request = Mockito.mock(WebRequest.class);
+        final String content = "body{}";
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected ETagService getETagService() {
+                return etagService;
+            }
+
+            @Override
+            protected boolean isContentBasedETags() {
+                return true;
+            }
+        };
+        this.setField("enableCaching", true, controller);
+        controller.putInCache("-css", content);
+
+        final String etag = ContentHash.etag(content);
+        Mockito.when(request.checkNotModified(etag)).thenReturn(false);
+
+        ResponseEntity<String> result = controller.css(request);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertSame(content, result.getBody());
+        Assertions.assertEquals(CacheControl.noCache().cachePrivate().getHeaderValue(), result.getHeaders().getCacheControl());
+        Assertions.assertEquals(etag, result.getHeaders().getETag());
+        Assertions.assertSame(controller.getContentETag("-css", content), controller.getContentETag("-css", content));
+
+        Mockito.when(request.checkNotModified(etag)).thenReturn(true);
+        result = controller.css(request);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+        Assertions.assertNull(result.getBody());
+
+        Mockito.verifyNoInteractions(etagService);
+    }
+
+    @Test
+    public void test_getContentETag_noCaching() {
+        ResourceController controller = new TestController();
+
+        String etag = controller.getContentETag("key", "content");
+        Assertions.assertEquals(ContentHash.etag("content"), etag);
+        Assertions.assertNotSame(etag, controller.getContentETag("key", "content"));
+    }
+
+    @Test
+    public void test_getContentETag_l10n() {
+        ResourceController controller = new TestController();
+        Map<String, String> a = new HashMap<>();
+        a.put("one", "1");
+        a.put("two", "2");
+        Map<String, String> b = new LinkedHashMap<>();
+        b.put("two", "2");
+        b.put("one", "1");
+        Map<String, String> c = new HashMap<>();
+        c.put("one", "1");
+        c.put("two", "3");
+
+        Assertions.assertEquals(controller.getContentETag(a), controller.getContentETag(b));
+        Assertions.assertNotEquals(controller.getContentETag(a), controller.getContentETag(c));
+    }
+
+    @Test
+    public void test_l10n_contentBasedETags() {
+        final L10N l10n = Mockito.mock(L10N.class);
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected L10N getL10N() {
+                return l10n;
+            }
+
+            @Override
+            protected boolean isContentBasedETags() {
+                return true;
+            }
+        };
+
+        Map<String, String> values = new HashMap<>();
+        values.put("key", "value");
+        Mockito.when(l10n.hasLocale(Locale.ENGLISH)).thenReturn(true);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "prefix")).thenReturn(values);
+        final String etag = controller.getContentETag(values);
+
+        ResponseEntity<PrimitiveMap<String>> result = controller.getL10n(request, Locale.ENGLISH, "prefix");
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals(etag, result.getHeaders().getETag());
+
+        Mockito.when(request.checkNotModified(etag)).thenReturn(true);
+        result = controller.getL10n(request, Locale.ENGLISH, "prefix");
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+    }
+
+    @Test
+    public void test_getStreamResource_contentBasedETags() {
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(new StaticResourceFileResolver("static-app", 2));
+            }
+
+            @Override
+            protected boolean isContentBasedETags() {
+                return true;
+            }
+        };
+
+        Mockito.when(request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)).thenReturn("img/black.jpg");
+
+        ResponseEntity<InputStreamResource> result = controller.img(request);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        String etag = result.getHeaders().getETag();
+        Assertions.assertNotNull(etag);
+        Assertions.assertTrue(etag.matches("^\"[0-9a-f]{16}\"$"));
+
+        String file = new StaticResourceFileResolver("static-app", 2).findFiles(Types.img, p -> p.toString().endsWith("black.jpg")).get(0);
+        Assertions.assertEquals(ContentHash.etag(IoTools.readAbsoluteFile(file)), etag);
+        Assertions.assertSame(controller.getFileETag(file), controller.getFileETag(file));
+
+        Mockito.when(request.checkNotModified(etag)).thenReturn(true);
+        result = controller.img(request);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+
+        controller.clearCache();
+        Assertions.assertEquals(etag, controller.getFileETag(file));
+    }
+
+    @Test
+    public void test_getPageScript_contentBasedETags() {
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected Set<String> getAllowedPages() {
+                return new HashSet<>(Arrays.asList("index"));
+            }
+
+            @Override
+            protected boolean isContentBasedETags() {
+                return true;
+            }
+        };
+
+        ResponseEntity<String> result = controller.jsPage(request, "index");
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals(ContentHash.etag(result.getBody()), result.getHeaders().getETag());
+
+        Mockito.when(request.checkNotModified(ContentHash.etag(result.getBody()))).thenReturn(true);
+        result = controller.jsPage(request, "index");
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+    }
+
+    @Test
+    public void test_getContentEncoders() {
+        ResourceController controller = new TestController();
+        List<ContentEncoder> encoders = controller.getContentEncoders();
+        Assertions.assertEquals(1, encoders.size());
+        Assertions.assertEquals("gzip", encoders.get(0).getEncoding());
+        Assertions.assertSame(encoders, controller.getContentEncoders());
+
+        controller = new TestController();
+        ContentEncoder br = new TestEncoder("br");
+        this.setField("contentEncoders", Arrays.asList(br), controller);
+        encoders = controller.getContentEncoders();
+        Assertions.assertEquals(2, encoders.size());
+        Assertions.assertSame(br, encoders.get(0));
+        Assertions.assertEquals("gzip", encoders.get(1).getEncoding());
+
+        controller = new TestController();
+        ContentEncoder gzip = new TestEncoder("GZIP");
+        this.setField("contentEncoders", Arrays.asList(gzip), controller);
+        Assertions.assertEquals(Arrays.asList(gzip), controller.getContentEncoders());
+    }
+
+    @Test
+    public void test_getContentEncoder() {
+        ResourceController controller = new TestController();
+        ContentEncoder br = new TestEncoder("br");
+        this.setField("contentEncoders", Arrays.asList(br), controller);
+        WebRequest request = Mockito.mock(WebRequest.class);
+
+        Assertions.assertNull(controller.getContentEncoder(null));
+        Assertions.assertNull(controller.getContentEncoder(request));
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put(" ", null);
+        expected.put("identity", null);
+        expected.put("deflate", null);
+        expected.put("gzip", "gzip");
+        expected.put("GZip;q=0.5", "gzip");
+        expected.put("gzip, deflate, br", "br");
+        expected.put("br;q=0.8, gzip", "gzip");
+        expected.put("br;q=0, gzip;q=0", null);
+        expected.put("br;q=junk, gzip", "gzip");
+        expected.put("*", "br");
+        expected.put("*;q=0.5, br;q=0", "gzip");
+        for (Map.Entry<String, String> e : expected.entrySet()) {
+            Mockito.when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn(e.getKey());
+            ContentEncoder result = controller.getContentEncoder(request);
+            Assertions.assertEquals(e.getValue(), result == null ? null : result.getEncoding(), e.getKey());
+        }
+    }
+
+    @Test
+    public void test_css_compression_disabled() {
+        final WebRequest request = Mockito.mock(WebRequest.class);
+        Mockito.when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+
+        ResourceController controller = new TestController();
+        this.setField("enableCaching", true, controller);
+        controller.putInCache("-css", "body{}");
+
+        ResponseEntity<?> result = controller.cssEncoded(request);
+        Assertions.assertEquals("body{}", result.getBody());
+        Assertions.assertNull(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertTrue(result.getHeaders().getVary().isEmpty());
+
+        result = controller.jsEncoded(request);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertNull(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void test_css_compression() throws Exception {
+        final WebRequest request = Mockito.mock(WebRequest.class);
+        final String content = "body{color:red}";
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected boolean isCompression() {
+                return true;
+            }
+
+            @Override
+            protected int getCompressionMinLength() {
+                return 0;
+            }
+
+            @Override
+            protected boolean isContentBasedETags() {
+                return true;
+            }
+        };
+        this.setField("enableCaching", true, controller);
+        controller.putInCache("-css", content);
+
+        final String etag = ContentHash.etag(content);
+        final String gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+        Mockito.when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, deflate");
+
+        ResponseEntity<?> result = controller.cssEncoded(request);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("gzip", result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(Arrays.asList(HttpHeaders.ACCEPT_ENCODING), result.getHeaders().getVary());
+        Assertions.assertEquals(gzipEtag, result.getHeaders().getETag());
+        Assertions.assertEquals(CacheControl.noCache().cachePrivate().getHeaderValue(), result.getHeaders().getCacheControl());
+        byte[] body = (byte[]) result.getBody();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            Assertions.assertEquals(content, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // encoded once
+        Assertions.assertSame(body, controller.cssEncoded(request).getBody());
+
+        // identity
+        Mockito.when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn(null);
+        result = controller.cssEncoded(request);
+        Assertions.assertEquals(content, result.getBody());
+        Assertions.assertEquals(etag, result.getHeaders().getETag());
+        Assertions.assertNull(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(Arrays.asList(HttpHeaders.ACCEPT_ENCODING), result.getHeaders().getVary());
+
+        // not modified
+        Mockito.when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        Mockito.when(request.checkNotModified(gzipEtag)).thenReturn(true);
+        result = controller.cssEncoded(request);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+        Assertions.assertNull(result.getBody());
+        Assertions.assertEquals(Arrays.asList(HttpHeaders.ACCEPT_ENCODING), result.getHeaders().getVary());
+
+        // new content is re-encoded
+        controller.clearCache();
+        controller.putInCache("-css", "p{}");
+        Mockito.when(request.checkNotModified(gzipEtag)).thenReturn(false);
+        body = (byte[]) controller.cssEncoded(request).getBody();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            Assertions.assertEquals("p{}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void test_js_compression_etagService() {
+        final ETagService etagService = Mockito.mock(ETagService.class);
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected boolean isCompression() {
+                return true;
+            }
+
+            @Override
+            protected ETagService getETagService() {
+                return etagService;
+            }
+        };
+        this.setField("enableCaching", true, controller);
+        this.setField("compressionMinLength", 8, controller);
+        this.setField("contentEncoders", Arrays.asList(new TestEncoder("br")), controller);
+        Mockito.when(etagService.getETag("-js")).thenReturn("W/\"etag\"");
+        Mockito.when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, br");
+
+        controller.putInCache("-js", "var a=1;");
+        ResponseEntity<?> result = controller.jsEncoded(request);
+        Assertions.assertEquals("br", result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals("W/\"etag\"", result.getHeaders().getETag());
+        Assertions.assertEquals("br:var a=1;", new String((byte[]) result.getBody(), StandardCharsets.UTF_8));
+
+        // too small to bother
+        controller.putInCache("-js", "a=1;");
+        result = controller.jsEncoded(request);
+        Assertions.assertEquals("a=1;", result.getBody());
+        Assertions.assertNull(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(Arrays.asList(HttpHeaders.ACCEPT_ENCODING), result.getHeaders().getVary());
+
+        Mockito.when(request.checkNotModified("W/\"etag\"")).thenReturn(true);
+        result = controller.jsEncoded(request);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+        Assertions.assertEquals(Arrays.asList(HttpHeaders.ACCEPT_ENCODING), result.getHeaders().getVary());
+    }
+
+    @Test
+    public void test_getStreamResource_fileSystemResource() throws Exception {
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(new StaticResourceFileResolver("static-app", 2));
+            }
+        };
+
+        Mockito.when(request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)).thenReturn("img/black.jpg");
+
+        String file = new StaticResourceFileResolver("static-app", 2).findFiles(Types.img, p -> p.toString().endsWith("black.jpg")).get(0);
+        ResponseEntity<InputStreamResource> result = controller.img(request);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertTrue(((ResourceController.ResourceStream) result.getBody()).getResource() instanceof FileSystemResource);
+        Assertions.assertEquals(Files.size(Paths.get(file)), result.getHeaders().getContentLength());
+        Assertions.assertEquals("image/jpeg", result.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+    }
+
+    @Test
+    public void test_getResource() throws Exception {
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(new StaticResourceFileResolver("static-app", 2));
+            }
+        };
+
+        Mockito.when(request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)).thenReturn("img/black.jpg");
+
+        String file = new StaticResourceFileResolver("static-app", 2).findFiles(Types.img, p -> p.toString().endsWith("black.jpg")).get(0);
+        ResponseEntity<Resource> result = controller.getResource(Types.img, request);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals(FileSystemResource.class, result.getBody().getClass());
+        Assertions.assertEquals(Paths.get(file), ((FileSystemResource) result.getBody()).getFile().toPath());
+        Assertions.assertEquals(Files.size(Paths.get(file)), result.getHeaders().getContentLength());
+        Assertions.assertEquals("bytes", result.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        Assertions.assertEquals("image/jpeg", result.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+
+        // If-Range mismatch is still sent in full
+        Mockito.when(request.getHeader(HttpHeaders.RANGE)).thenReturn("bytes=0-9");
+        Mockito.when(request.getHeader(HttpHeaders.IF_RANGE)).thenReturn("\"other\"");
+        result = controller.getResource(Types.img, request);
+        Assertions.assertEquals(InputStreamResource.class, result.getBody().getClass());
+        result.getBody().getInputStream().close();
+
+        Mockito.when(request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)).thenReturn("img/missing.jpg");
+        result = controller.getResource(Types.img, request);
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+        Assertions.assertNull(result.getBody());
+    }
+
+    @Test
+    public void test_getFileResource_memoryCache() throws Exception {
+        Path file = Files.createTempFile("resource", ".png");
+        try {
+            ResourceController controller = new TestController();
+            this.setField("staticMemoryCache", true, controller);
+            this.setField("staticMemoryCacheMaxFileBytes", 8L, controller);
+
+            Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+            Resource result = controller.getFileResource(file.toString());
+            Assertions.assertTrue(result instanceof ByteArrayResource);
+            Assertions.assertEquals("abc", new String(((ByteArrayResource) result).getByteArray(), StandardCharsets.UTF_8));
+            Assertions.assertSame(((ByteArrayResource) result).getByteArray(),
+                    ((ByteArrayResource) controller.getFileResource(file.toString())).getByteArray());
+
+            // changed on disk
+            Files.write(file, "abcd".getBytes(StandardCharsets.UTF_8));
+            result = controller.getFileResource(file.toString());
+            Assertions.assertEquals("abcd", new String(((ByteArrayResource) result).getByteArray(), StandardCharsets.UTF_8));
+
+            // too large to keep in memory
+            Files.write(file, "abcdefghij".getBytes(StandardCharsets.UTF_8));
+            result = controller.getFileResource(file.toString());
+            Assertions.assertTrue(result instanceof FileSystemResource);
+            Assertions.assertEquals(10, result.contentLength());
+
+            // disabled
+            Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+            this.setField("staticMemoryCache", false, controller);
+            Assertions.assertTrue(controller.getFileResource(file.toString()) instanceof FileSystemResource);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test_respond_resource() {
+        ResourceController controller = new TestController();
+
+        ResourceController.ResourceStream content = new ResourceController.ResourceStream(new ByteArrayResource(new byte[5]));
+        ResponseEntity<InputStreamResource> result = controller.respond(content, "png", "key", "\"etag\"");
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertSame(content, result.getBody());
+        Assertions.assertEquals(5, result.getHeaders().getContentLength());
+        Assertions.assertEquals("\"etag\"", result.getHeaders().getETag());
+
+        InputStreamResource stream = new InputStreamResource(new ByteArrayInputStream(new byte[5]));
+        result = controller.respond(stream, "png", "key", "\"etag\"");
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals(-1, result.getHeaders().getContentLength());
+
+        result = controller.respond(content, "junk", "key", "\"etag\"");
+        Assertions.assertEquals(HttpStatus.NOT_ACCEPTABLE, result.getStatusCode());
+    }
+
+    @Test
+    public void test_resourceStream() throws Exception {
+        ByteArrayResource bytes = new ByteArrayResource("abc".getBytes(StandardCharsets.UTF_8));
+        ResourceController.ResourceStream stream = new ResourceController.ResourceStream(bytes);
+        Assertions.assertSame(bytes, stream.getResource());
+        Assertions.assertTrue(stream.exists());
+        Assertions.assertFalse(stream.isOpen());
+        Assertions.assertEquals(3, stream.contentLength());
+        Assertions.assertEquals(bytes.getDescription(), stream.getDescription());
+        Assertions.assertEquals(new ResourceController.ResourceStream(bytes), stream);
+        Assertions.assertEquals(bytes.hashCode(), stream.hashCode());
+        // can be read more than once, e.g. once per requested range
+        for (int i = 0; i < 2; i++) {
+            try (InputStream in = stream.getInputStream()) {
+                Assertions.assertEquals("abc", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void test_findStaticFiles_index() {
+        final StaticResourceFileResolver resolver = Mockito.spy(new StaticResourceFileResolver("static-app", 2));
+        final StaticResourceFileResolver notApplicable = Mockito.mock(StaticResourceFileResolver.class);
+        Mockito.when(notApplicable.findFiles(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(null);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(resolver, notApplicable);
+            }
+        };
+        List<String> expected = controller.findStaticFiles(Types.img, "img/black.jpg");
+        Assertions.assertEquals(1, expected.size());
+        Mockito.verify(resolver, Mockito.times(1)).findFiles(ArgumentMatchers.eq(Types.img), ArgumentMatchers.any());
+
+        this.setField("enableCaching", true, controller);
+        Assertions.assertEquals(expected, controller.findStaticFiles(Types.img, "img/black.jpg"));
+        Assertions.assertEquals(expected, controller.findStaticFiles(Types.img, "/img/black.jpg"));
+        Assertions.assertEquals(expected, controller.findStaticFiles(Types.img, "black.jpg"));
+        Assertions.assertTrue(controller.findStaticFiles(Types.img, "img/white.jpg").isEmpty());
+        Assertions.assertTrue(controller.findStaticFiles(Types.img, "mg/black.jpg").isEmpty());
+        Mockito.verify(resolver, Mockito.times(2)).findFiles(ArgumentMatchers.eq(Types.img), ArgumentMatchers.any());
+        Mockito.verify(notApplicable, Mockito.times(2)).findFiles(ArgumentMatchers.eq(Types.img), ArgumentMatchers.any());
+
+        // rebuilt after the cache is cleared
+        controller.clearCache();
+        Assertions.assertEquals(expected, controller.findStaticFiles(Types.img, "img/black.jpg"));
+        Mockito.verify(resolver, Mockito.times(3)).findFiles(ArgumentMatchers.eq(Types.img), ArgumentMatchers.any());
+
+        // disabled
+        this.setField("staticIndex", false, controller);
+        Assertions.assertEquals(expected, controller.findStaticFiles(Types.img, "img/black.jpg"));
+        Mockito.verify(resolver, Mockito.times(4)).findFiles(ArgumentMatchers.eq(Types.img), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_findStaticFiles_index_notApplicable() {
+        final StaticResourceFileResolver notApplicable = Mockito.mock(StaticResourceFileResolver.class);
+        Mockito.when(notApplicable.findFiles(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(null);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(notApplicable);
+            }
+        };
+        this.setField("enableCaching", true, controller);
+
+        Assertions.assertNull(controller.findStaticFiles(Types.img, "img/black.jpg"));
+    }
+
+    @Test
+    public void test_getStreamResource_range() throws Exception {
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(new StaticResourceFileResolver("static-app", 2));
+            }
+
+            @Override
+            protected boolean isContentBasedETags() {
+                return true;
+            }
+        };
+
+        Mockito.when(request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)).thenReturn("img/black.jpg");
+        String file = new StaticResourceFileResolver("static-app", 2).findFiles(Types.img, p -> p.toString().endsWith("black.jpg")).get(0);
+        long size = Files.size(Paths.get(file));
+
+        // no range
+        ResponseEntity<InputStreamResource> result = controller.img(request);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertTrue(result.getBody() instanceof ResourceController.ResourceStream);
+        Assertions.assertEquals("bytes", result.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        Assertions.assertEquals(size, result.getHeaders().getContentLength());
+        Assertions.assertEquals(Files.getLastModifiedTime(Paths.get(file)).toMillis() / 1000 * 1000, result.getHeaders().getLastModified());
+        final String etag = result.getHeaders().getETag();
+        final String lastModified = result.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+
+        // range is applied by the message converter
+        Mockito.when(request.getHeader(HttpHeaders.RANGE)).thenReturn("bytes=0-9");
+        result = controller.img(request);
+        Assertions.assertTrue(result.getBody() instanceof ResourceController.ResourceStream);
+        Assertions.assertEquals(-1, result.getHeaders().getContentLength());
+
+        Map<String, Boolean> ifRange = new LinkedHashMap<>();
+        ifRange.put(etag, true);
+        ifRange.put(lastModified, true);
+        ifRange.put("\"other\"", false);
+        ifRange.put("W/" + etag, false);
+        ifRange.put("Thu, 01 Jan 1970 00:00:00 GMT", false);
+        ifRange.put("junk", false);
+        for (Map.Entry<String, Boolean> e : ifRange.entrySet()) {
+            Mockito.when(request.getHeader(HttpHeaders.IF_RANGE)).thenReturn(e.getKey());
+            result = controller.img(request);
+            Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+            if (e.getValue()) {
+                Assertions.assertTrue(result.getBody() instanceof ResourceController.ResourceStream, e.getKey());
+                Assertions.assertEquals(-1, result.getHeaders().getContentLength());
+            } else {
+                Assertions.assertEquals(InputStreamResource.class, result.getBody().getClass(), e.getKey());
+                Assertions.assertEquals(size, result.getHeaders().getContentLength());
+                result.getBody().getInputStream().close();
+            }
+        }
+    }
+
+    @Test
+    public void test_withRange_passThrough() {
+        WebRequest request = Mockito.mock(WebRequest.class);
+        Mockito.when(request.getHeader(HttpHeaders.RANGE)).thenReturn("bytes=0-9");
+        ResourceController controller = new TestController();
+
+        ResponseEntity<InputStreamResource> response = new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        Assertions.assertSame(response, controller.withRange(request, response));
+
+        response = new ResponseEntity<>(new InputStreamResource(new ByteArrayInputStream(new byte[5])), HttpStatus.OK);
+        Assertions.assertSame(response, controller.withRange(request, response));
+
+        response = new ResponseEntity<>(new ResourceController.ResourceStream(new ByteArrayResource(new byte[5])), HttpStatus.OK);
+        ResponseEntity<InputStreamResource> result = controller.withRange(null, response);
+        Assertions.assertEquals("bytes", result.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        Assertions.assertEquals(-1, result.getHeaders().getLastModified());
+    }
+
+    @Test
+    public void test_getBundleUrls() {
+        ResourceController controller = new TestController();
+        this.setField("enableCaching", true, controller);
+        controller.putInCache("-css", "body{}");
+        controller.putInCache("-js", "var a;");
+
+        Assertions.assertNull(controller.getBundleUrls());
+
+        this.setField("fingerprinting", true, controller);
+        ServletContext context = Mockito.mock(ServletContext.class);
+        Mockito.when(context.getContextPath()).thenReturn("/app");
+        this.setField("context", context, controller);
+
+        Map<String, String> urls = controller.getBundleUrls();
+        Assertions.assertEquals("/app/css/v/" + ContentHash.toHex(ContentHash.xxh64("body{}".getBytes(StandardCharsets.UTF_8))), urls.get("css"));
+        Assertions.assertEquals("/app/js/v/" + ContentHash.toHex(ContentHash.xxh64("var a;".getBytes(StandardCharsets.UTF_8))), urls.get("js"));
+    }
+
+    @Test
+    public void test_getBundleUrls_notCached() {
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected String getCompiled(Types type, String cacheKey) {
+                Assertions.fail("Rendering must not compile bundles");
+                return null;
+            }
+        };
+        this.setField("fingerprinting", true, controller);
+
+        // caching disabled
+        Map<String, String> urls = controller.getBundleUrls();
+        Assertions.assertEquals("/css", urls.get("css"));
+        Assertions.assertEquals("/js", urls.get("js"));
+
+        // caching enabled, not compiled yet
+        this.setField("enableCaching", true, controller);
+        controller.putInCache("-css", "body{}");
+        urls = controller.getBundleUrls();
+        Assertions.assertEquals("/css/v/" + ContentHash.toHex(ContentHash.xxh64("body{}".getBytes(StandardCharsets.UTF_8))), urls.get("css"));
+        Assertions.assertEquals("/js", urls.get("js"));
+    }
+
+    @Test
+    public void test_getVersionedBundle() {
+        final ETagService etagService = Mockito.mock(ETagService.class);
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected ETagService getETagService() {
+                return etagService;
+            }
+        };
+        this.setField("enableCaching", true, controller);
+        controller.putInCache("-css", "body{}");
+        Mockito.when(etagService.getETag("-css")).thenReturn("W/\"etag\"");
+        String hash = controller.getBundleHash(Types.css);
+
+        ResponseEntity<?> result = controller.cssVersion(request, hash);
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+
+        this.setField("fingerprinting", true, controller);
+        result = controller.cssVersion(request, hash);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("body{}", result.getBody());
+        Assertions.assertEquals("max-age=31536000, public, immutable", result.getHeaders().getCacheControl());
+
+        // stale hash
+        result = controller.cssVersion(request, "0000000000000000");
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("body{}", result.getBody());
+        Assertions.assertEquals(CacheControl.noCache().cachePrivate().getHeaderValue(), result.getHeaders().getCacheControl());
+
+        Mockito.when(request.checkNotModified("W/\"etag\"")).thenReturn(true);
+        result = controller.cssVersion(request, hash);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+    }
+
+    @Test
+    public void test_warmUp() {
+        final ThemeService themeService = Mockito.mock(ThemeService.class);
+        Mockito.when(themeService.getThemes()).thenReturn(new HashSet<>(Arrays.asList("dark")));
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected Set<String> getAllowedPages() {
+                return new HashSet<>(Arrays.asList("index"));
+            }
+        };
+        this.setField("themeService", themeService, controller);
+        this.setField("userTheme", new UserTheme(), controller);
+        this.setField("warmUp", true, controller);
+        this.setField("warmUpThreads", 1, controller);
+
+        // caching disabled
+        controller.onContextRefreshed(null);
+        Mockito.verify(themeService, Mockito.never()).getThemes();
+
+        this.setField("enableCaching", true, controller);
+        controller.onContextRefreshed(null);
+        this.waitUntil(() -> controller.getCache().size() == 5);
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("-css", "-js", "dark-css", "dark-js", "-js-index")), controller.getCache().keySet());
+
+        // only once
+        controller.onContextRefreshed(null);
+        Mockito.verify(themeService, Mockito.times(1)).getThemes();
+    }
+
+    @Test
+    public void test_warmUp_errors() throws Exception {
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected String minify(Types type, String content) {
+                if (type == Types.css) {
+                    throw new RuntimeException("boom");
+                }
+                return content;
+            }
+        };
+        this.setField("enableCaching", true, controller);
+        this.setField("compression", true, controller);
+        this.setField("compressionMinLength", 0, controller);
+
+        controller.warmUp().get();
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("-js")), controller.getCache().keySet());
+    }
+
+    @Test
+    public void test_onResourceChanged() {
+        final ETagService etagService = Mockito.mock(ETagService.class);
+        final ThemeService themeService = Mockito.mock(ThemeService.class);
+        final StaticResourceFileResolver resolver = new StaticResourceFileResolver("static-app", 2);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(resolver);
+            }
+        };
+        this.setField("etagService", etagService, controller);
+        this.setField("themeService", themeService, controller);
+        this.setField("enableCaching", true, controller);
+        Mockito.when(themeService.getThemes()).thenReturn(new HashSet<>(Arrays.asList("dark", "light")));
+        controller.putInCache("-css", "a");
+        controller.putInCache("dark-css", "b");
+        controller.putInCache("light-css", "c");
+        controller.putInCache("-js", "d");
+        controller.putInCache("-js-index", "e");
+        controller.getContentETag("dark-css", controller.getFromCache("dark-css"));
+        Assertions.assertEquals(1, controller.findStaticFiles(Types.img, "img/black.jpg").size());
+        Map<String, ?> contentETags = this.getField("contentETags", controller);
+        Map<String, ?> staticIndexes = this.getField("staticIndexes", controller);
+        Assertions.assertEquals(1, contentETags.size());
+        Assertions.assertEquals(1, staticIndexes.size());
+
+        // one theme
+        controller.onResourceChanged("dark", "css/site.css", "/ext/themes/dark/css/site.css");
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("-css", "light-css", "-js", "-js-index")), controller.getCache().keySet());
+        Assertions.assertTrue(contentETags.isEmpty());
+        Mockito.verify(etagService).evictETag("dark-css");
+        Mockito.verify(etagService, Mockito.never()).evictETag("-css");
+        Assertions.assertEquals("dark-css#1", controller.getETagId("dark-css"));
+        Assertions.assertEquals("light-css", controller.getETagId("light-css"));
+
+        // shared by every theme
+        controller.onResourceChanged(null, "css/site.css", "/ext/css/site.css");
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("-js", "-js-index")), controller.getCache().keySet());
+        Mockito.verify(etagService).evictETag("-css");
+        Mockito.verify(etagService).evictETag("light-css");
+        Mockito.verify(etagService).evictETag("dark-css#1");
+        Assertions.assertEquals("-css#1", controller.getETagId("-css"));
+        Assertions.assertEquals("dark-css#2", controller.getETagId("dark-css"));
+        Assertions.assertEquals("light-css#1", controller.getETagId("light-css"));
+
+        // static file
+        controller.onResourceChanged(null, "img/black.jpg", "/ext/img/black.jpg");
+        Assertions.assertTrue(staticIndexes.isEmpty());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("-js", "-js-index")), controller.getCache().keySet());
+        Mockito.verify(etagService).evictETag("-img-/img/black.jpg");
+        Mockito.verify(etagService).evictETag("-img-/black.jpg");
+        Assertions.assertEquals("-img-/img/black.jpg#1", controller.getETagId("-img-/img/black.jpg"));
+        Assertions.assertEquals("-img-/black.jpg#1", controller.getETagId("-img-/black.jpg"));
+        Assertions.assertEquals("-img-/white.jpg", controller.getETagId("-img-/white.jpg"));
+
+        // whole directory
+        controller.onResourceChanged(null, null, "/ext");
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("-js-index")), controller.getCache().keySet());
+        Assertions.assertEquals("-img-/white.jpg#3", controller.getETagId("-img-/white.jpg"));
+        Assertions.assertEquals("-img-/img/black.jpg#3", controller.getETagId("-img-/img/black.jpg"));
+        Assertions.assertEquals("dark-css#3", controller.getETagId("dark-css"));
+    }
+
+    @Test
+    public void test_onResourceChanged_etagGenerationsBounded() {
+        ResourceController controller = new ResourceController();
+        this.setField("etagGenerationsMaxEntries", 4, controller);
+        Assertions.assertEquals(4, controller.getETagGenerationsMaxEntries());
+
+        controller.onResourceChanged(null, "img/a.jpg", null);
+        controller.onResourceChanged(null, "img/a.jpg", null);
+        controller.onResourceChanged(null, "img/b.jpg", null);
+        Assertions.assertEquals("-img-/img/a.jpg#2", controller.getETagId("-img-/img/a.jpg"));
+        Assertions.assertEquals("-img-/img/b.jpg#1", controller.getETagId("-img-/img/b.jpg"));
+        Assertions.assertEquals("-img-/img/c.jpg", controller.getETagId("-img-/img/c.jpg"));
+
+        // too many keys (each file is requested as /img/x.jpg and /x.jpg), every key
+        // moves past the ids issued so far
+        controller.onResourceChanged(null, "img/c.jpg", null);
+        Object generations = this.getField("etagGenerations", controller);
+        Map<String, ?> keys = this.getField("keys", generations);
+        Assertions.assertTrue(keys.isEmpty());
+        Assertions.assertEquals("-img-/img/a.jpg#3", controller.getETagId("-img-/img/a.jpg"));
+        Assertions.assertEquals("-img-/img/b.jpg#3", controller.getETagId("-img-/img/b.jpg"));
+        Assertions.assertEquals("-img-/img/c.jpg#3", controller.getETagId("-img-/img/c.jpg"));
+
+        controller.onResourceChanged(null, "img/b.jpg", null);
+        Assertions.assertEquals("-img-/img/b.jpg#4", controller.getETagId("-img-/img/b.jpg"));
+        Assertions.assertSame(generations, this.getField("etagGenerations", controller));
+        Assertions.assertEquals(2, keys.size());
+    }
+
+    @Test
+    public void test_onResourceChanged_etagValueChanges() {
+        final ETagService etagService = Mockito.mock(ETagService.class);
+
+        ResourceController controller = new ResourceController();
+        this.setField("etagService", etagService, controller);
+        Mockito.when(etagService.getETag("-img-/img/black.jpg")).thenReturn("W/\"old\"");
+        Mockito.when(etagService.getETag("-img-/img/black.jpg#1")).thenReturn("W/\"new\"");
+        WebRequest request = Mockito.mock(WebRequest.class);
+        Mockito.when(request.checkNotModified("W/\"old\"")).thenReturn(true);
+
+        Assertions.assertTrue(controller.checkEtag(request, "-img-/img/black.jpg"));
+
+        controller.onResourceChanged(null, "img/black.jpg", null);
+
+        Assertions.assertFalse(controller.checkEtag(request, "-img-/img/black.jpg"));
+        Mockito.verify(request).checkNotModified("W/\"new\"");
+    }
+
+    @Test
+    public void test_onThemesChanged() {
+        final ThemeService themeService = Mockito.mock(ThemeService.class);
+
+        ResourceController controller = new ResourceController();
+        this.setField("themeService", themeService, controller);
+        List<StaticResourceFileResolver> reverse = controller.getFileResolversReverse();
+        Assertions.assertSame(reverse, controller.getFileResolversReverse());
+
+        controller.onThemesChanged();
+        Mockito.verify(themeService).clearCache();
+        Assertions.assertNull(this.getField("reverseResolvers", controller));
+        Assertions.assertNotSame(reverse, controller.getFileResolversReverse());
+    }
+
+    @Test
+    public void test_watch() throws Exception {
+        Path root = Files.createTempDirectory("ext");
+
+        ResourceController controller = new ResourceController();
+        this.setField("enableCaching", true, controller);
+        this.setField("externalResourcePath", root.toString() + "/", controller);
+        controller.putInCache("-css", "a");
+        controller.putInCache("-js-index", "b");
+
+        // disabled
+        controller.onContextRefreshed(null);
+        List<?> watchers = this.getField("watchers", controller);
+        Assertions.assertTrue(watchers.isEmpty());
+
+        this.setField("watch", true, controller);
+        controller.onContextRefreshed(null);
+        Assertions.assertEquals(1, watchers.size());
+
+        Files.writeString(root.resolve("site.css"), "b{}");
+        this.waitUntil(() -> controller.getFromCache("-css") == null);
+        Assertions.assertEquals("b", controller.getFromCache("-js-index"));
+
+        controller.destroy();
+        Assertions.assertTrue(watchers.isEmpty());
+    }
+
+    @Test
+    public void test_watch_l10n() throws Exception {
+        final ApplicationEventPublisher publisher = Mockito.mock(ApplicationEventPublisher.class);
+        final AtomicInteger published = new AtomicInteger();
+        Mockito.doAnswer(i -> published.incrementAndGet()).when(publisher).publishEvent(ArgumentMatchers.any(L10NChangedEvent.class));
+        Path root = Files.createTempDirectory("l10n");
+
+        ResourceController controller = new ResourceController();
+        this.setField("watch", true, controller);
+        this.setField("externalL10nPath", root.toString(), controller);
+        this.setField("eventPublisher", publisher, controller);
+
+        controller.onContextRefreshed(null);
+        List<?> watchers = this.getField("watchers", controller);
+        Assertions.assertEquals(1, watchers.size());
+
+        Files.writeString(root.resolve("messages-en.json"), "{}");
+        this.waitUntil(() -> published.get() > 0);
+
+        controller.destroy();
+    }
+
+    @Test
+    public void test_watch_missingDirectory() throws Exception {
+        ResourceController controller = new ResourceController();
+        this.setField("watch", true, controller);
+        this.setField("externalResourcePath", "/does/not/exist/", controller);
+
+        controller.onContextRefreshed(null);
+        List<?> watchers = this.getField("watchers", controller);
+        Assertions.assertTrue(watchers.isEmpty());
+    }
+
+    @Test
+    public void test_compile_parallel() throws Exception {
+        final RequestAttributes attributes = Mockito.mock(RequestAttributes.class);
+        final List<RequestAttributes> seen = new ArrayList<>();
+        final StaticResourceFileResolver notApplicable = Mockito.mock(StaticResourceFileResolver.class);
+        Mockito.when(notApplicable.findFiles(ArgumentMatchers.any(), ArgumentMatchers.any())).thenAnswer(i -> {
+            synchronized (seen) {
+                seen.add(RequestContextHolder.getRequestAttributes());
+            }
+            return null;
+        });
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList( //
+                        AbstractResourceResolver.LIBRARY_RESOLVER, //
+                        notApplicable, //
+                        new StaticResourceFileResolver("static-app", 2), //
+                        new StaticResourceFileResolver("static-ext", 2));
+            }
+        };
+        this.setField("parallelCompile", true, controller);
+
+        RequestContextHolder.setRequestAttributes(attributes);
+        String result;
+        try {
+            result = controller.compile(Types.js);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        // pool threads are not part of the request
+        Assertions.assertEquals(Arrays.asList((RequestAttributes) null), seen);
+        int lib = result.indexOf("/* _lib.js */");
+        int app = result.indexOf("var $$$ = {");
+        int ext = result.indexOf("var $$$$ = {");
+        Assertions.assertTrue(lib >= 0);
+        Assertions.assertTrue(app > lib);
+        Assertions.assertTrue(ext > app);
+
+        // same result every time
+        Assertions.assertEquals(result, controller.compile(Types.js));
+
+        ExecutorService pool = this.getField("compilePool", controller);
+        controller.destroy();
+        Assertions.assertTrue(pool.isShutdown());
+        Assertions.assertNull(this.getField("compilePool", controller));
+    }
+
+    @Test
+    public void test_compile_parallel_sameAsLibrary() throws Exception {
+        final Path root = Files.createTempDirectory("themes");
+        Files.writeString(Files.createDirectories(root.resolve("dark/css")).resolve("dark.css"), ".dark{color:black}");
+        Files.writeString(Files.createDirectories(root.resolve("dark/js")).resolve("dark.js"), "var dark = true;");
+        final UserTheme userTheme = new UserTheme();
+        userTheme.setName("dark");
+        final ThemeResourceFileResolver themeResolver = new ThemeResourceFileResolver(root.toString() + "/", 2);
+        this.setField("pathNormalizer", new PathNormalizer(), themeResolver);
+        this.setField("userTheme", userTheme, themeResolver);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList( //
+                        AbstractResourceResolver.LIBRARY_RESOLVER, //
+                        new StaticResourceFileResolver("static-library", 2), //
+                        new StaticResourceFileResolver("static-app-variable", 2), //
+                        new StaticResourceFileResolver("static-app", 2), //
+                        new StaticResourceFileResolver("static-ext", 2), //
+                        themeResolver);
+            }
+
+            @Override
+            protected UserTheme getUserTheme() {
+                return userTheme;
+            }
+        };
+
+        List<String> types = Arrays.asList("css", "js", "l10n");
+        for (Types type : Types.values()) {
+            if (!types.contains(type.name())) {
+                continue;
+            }
+
+            this.setField("parallelCompile", false, controller);
+            String expected = controller.compile(type);
+            this.setField("parallelCompile", true, controller);
+            Assertions.assertEquals(expected, controller.compile(type), type.name());
+        }
+
+        // the theme is passed to the pool explicitly
+        Assertions.assertTrue(controller.compile(Types.css).contains(".dark{color:black}"));
+        Assertions.assertTrue(controller.compile(Types.js).contains("var dark = true;"));
+        controller.destroy();
+    }
+
+    @Test
+    public void test_getCompiled_incremental() throws Exception {
+        final Path root = Files.createTempDirectory("bundle");
+        final AtomicInteger minified = new AtomicInteger();
+        Path dir = Files.createDirectory(root.resolve("css"));
+        Path a = Files.writeString(dir.resolve("a.css"), ".a{color:red}");
+        Path b = Files.writeString(dir.resolve("b.css"), ".b{color:blue}");
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(new StaticResourceFileResolver(root.toString() + "/", 2));
+            }
+
+            @Override
+            protected String getConsoleLogPrefix() {
+                return "";
+            }
+
+            @Override
+            protected String getContextPath() {
+                return "";
+            }
+
+            @Override
+            protected String minify(Types type, String content) {
+                minified.incrementAndGet();
+                return content.trim();
+            }
+        };
+        this.setField("enableCaching", true, controller);
+        this.setField("incrementalCompile", true, controller);
+        this.setField("minifyPerFile", true, controller);
+
+        String first = controller.getCompiled(Types.css, "-css");
+        Assertions.assertTrue(first.contains(".a{color:red}"));
+        Assertions.assertTrue(first.contains(".b{color:blue}"));
+        Assertions.assertEquals(2, minified.get());
+
+        // rebuilt from fragments
+        controller.getCache().clear();
+        Assertions.assertEquals(first, controller.getCompiled(Types.css, "-css"));
+        Assertions.assertEquals(2, minified.get());
+
+        // only the changed file is processed
+        Files.writeString(b, ".b{color:green}");
+        Files.setLastModifiedTime(b, FileTime.fromMillis(Files.getLastModifiedTime(b).toMillis() + 2000));
+        controller.getCache().clear();
+        String changed = controller.getCompiled(Types.css, "-css");
+        Assertions.assertTrue(changed.contains(".a{color:red}"));
+        Assertions.assertTrue(changed.contains(".b{color:green}"));
+        Assertions.assertFalse(changed.contains(".b{color:blue}"));
+        Assertions.assertEquals(3, minified.get());
+
+        // touched but not changed
+        Files.setLastModifiedTime(a, FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis() + 2000));
+        controller.getCache().clear();
+        Assertions.assertEquals(changed, controller.getCompiled(Types.css, "-css"));
+        Assertions.assertEquals(3, minified.get());
+
+        // parallel
+        this.setField("parallelCompile", true, controller);
+        controller.getCache().clear();
+        Assertions.assertEquals(changed, controller.getCompiled(Types.css, "-css"));
+        Assertions.assertEquals(3, minified.get());
+        controller.destroy();
+
+        // fragments outlive the bundle cache
+        controller.clearCache();
+        Assertions.assertEquals(changed, controller.getCompiled(Types.css, "-css"));
+        Assertions.assertEquals(3, minified.get());
+
+        // changed file is evicted
+        controller.onResourceChanged(null, "css/b.css", b.toString());
+        Assertions.assertEquals(changed, controller.getCompiled(Types.css, "-css"));
+        Assertions.assertEquals(4, minified.get());
+
+        // everything is processed again after the fragments are cleared
+        controller.clearFragments();
+        controller.clearCache();
+        Assertions.assertEquals(changed, controller.getCompiled(Types.css, "-css"));
+        Assertions.assertEquals(6, minified.get());
+    }
+
+    @Test
+    public void test_getCompiled_incremental_separator() throws Exception {
+        final Path root = Files.createTempDirectory("bundle");
+        Path dir = Files.createDirectory(root.resolve("js"));
+        Files.writeString(dir.resolve("a.js"), "var a = 1");
+        Files.writeString(dir.resolve("b.js"), "(function() {})()");
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList(new StaticResourceFileResolver(root.toString() + "/", 2));
+            }
+
+            @Override
+            protected String getConsoleLogPrefix() {
+                return "";
+            }
+
+            @Override
+            protected String getContextPath() {
+                return "";
+            }
+
+            @Override
+            protected String minify(Types type, String content) {
+                return content.trim();
+            }
+        };
+        this.setField("enableCaching", true, controller);
+        this.setField("incrementalCompile", true, controller);
+        this.setField("minifyPerFile", true, controller);
+
+        String result = controller.getCompiled(Types.js, "-js");
+        Assertions.assertTrue(result.contains("var a = 1;\n"));
+        Assertions.assertTrue(result.contains("(function() {})();\n"));
+    }
+
+    @Test
+    public void test_getCompiled_incremental_fullRebuild() {
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected List<StaticResourceFileResolver> getFileResolvers() {
+                return Arrays.asList( //
+                        AbstractResourceResolver.LIBRARY_RESOLVER, //
+                        new StaticResourceFileResolver("static-app-variable", 2));
+            }
+
+            @Override
+            protected String getConsoleLogPrefix() {
+                return "";
+            }
+
+            @Override
+            protected String getContextPath() {
+                return "";
+            }
+
+            /*
+             * Like Closure Compiler this works on the whole input, it is not the same
+             * per file
+             */
+            @Override
+            protected String minify(Types type, String content) {
+                return "'use strict';" + content.replaceAll("\\s+", " ");
+            }
+        };
+
+        for (Types type : Arrays.asList(Types.css, Types.js)) {
+            String cacheKey = "-" + type.name();
+            this.setField("enableCaching", false, controller);
+            this.setField("incrementalCompile", false, controller);
+            this.setField("minifyPerFile", false, controller);
+            this.setField("parallelCompile", false, controller);
+            String full = controller.getCompiled(type, cacheKey);
+            Assertions.assertEquals(1, full.split("'use strict';", -1).length - 1, type.name());
+
+            this.setField("enableCaching", true, controller);
+            this.setField("incrementalCompile", true, controller);
+            Assertions.assertEquals(full, controller.getCompiled(type, cacheKey), type.name());
+
+            // from fragments
+            controller.clearCache();
+            Assertions.assertEquals(full, controller.getCompiled(type, cacheKey), type.name());
+
+            // parallel
+            this.setField("parallelCompile", true, controller);
+            controller.clearCache();
+            Assertions.assertEquals(full, controller.getCompiled(type, cacheKey), type.name());
+
+            // minifying per file is opt-in because it does not produce the same bundle
+            this.setField("minifyPerFile", true, controller);
+            controller.clearFragments();
+            controller.clearCache();
+            Assertions.assertNotEquals(full, controller.getCompiled(type, cacheKey), type.name());
+            controller.clearFragments();
+            controller.clearCache();
+        }
+        controller.destroy();
+    }
+
+    @Test
+    public void test_getFragment_keys() throws Exception {
+        final Path root = Files.createTempDirectory("bundle");
+        final AtomicInteger minified = new AtomicInteger();
+        Path dir = Files.createDirectory(root.resolve("css"));
+        Path a = Files.writeString(dir.resolve("a.css"), ".a{color:red}");
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected String getConsoleLogPrefix() {
+                return "";
+            }
+
+            @Override
+            protected String getContextPath() {
+                return "";
+            }
+
+            @Override
+            protected String minify(Types type, String content) {
+                minified.incrementAndGet();
+                return content.trim();
+            }
+        };
+        this.setField("minifyPerFile", true, controller);
+
+        // one fragment per type and theme
+        ResourceController.Fragment dark = controller.getFragment(Types.css, "dark", a.toString());
+        ResourceController.Fragment light = controller.getFragment(Types.css, "light", a.toString());
+        ResourceController.Fragment js = controller.getFragment(Types.js, "dark", a.toString());
+        ResourceController.Fragment none = controller.getFragment(Types.css, null, a.toString());
+        Assertions.assertNotSame(dark, light);
+        Assertions.assertNotSame(dark, js);
+        Assertions.assertNotSame(dark, none);
+        Assertions.assertEquals(4, minified.get());
+
+        Assertions.assertSame(dark, controller.getFragment(Types.css, "dark", a.toString()));
+        Assertions.assertSame(none, controller.getFragment(Types.css, null, a.toString()));
+        Assertions.assertEquals(4, minified.get());
+
+        WeightedCache<?, ?> cache = this.getField("fragmentCache", controller);
+        Assertions.assertEquals(4, cache.keySet().size());
+
+        // a change drops the file for every type and theme
+        controller.onResourceChanged(null, "css/a.css", a.toString());
+        Assertions.assertTrue(cache.keySet().isEmpty());
+    }
+
+    @Test
+    public void test_toJson() {
+        ResourceController controller = new ResourceController();
+
+        Map<String, String> values = new HashMap<>();
+        values.put("b", "q\"\\\n\r\t\b\f\u0001\u00e9");
+        values.put("a", null);
+        Assertions.assertEquals("{\"a\":null,\"b\":\"q\\\"\\\\\\n\\r\\t\\b\\f\\u0001\u00e9\"}", controller.toJson(values));
+        Assertions.assertEquals("{}", controller.toJson(new HashMap<>()));
+    }
+
+    @Test
+    public void test_l10n_serialized() throws Exception {
+        final L10N l10n = Mockito.mock(L10N.class);
+        final WebRequest request = Mockito.mock(WebRequest.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected L10N getL10N() {
+                return l10n;
+            }
+        };
+        this.setField("serializedL10n", true, controller);
+        this.setField("enableCaching", true, controller);
+
+        Map<String, String> values = new HashMap<>();
+        values.put("b", "2");
+        values.put("a", "1");
+        Mockito.when(l10n.hasLocale(Locale.ENGLISH)).thenReturn(true);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "prefix")).thenReturn(values);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "none")).thenReturn(new HashMap<>());
+        final byte[] json = "{\"a\":\"1\",\"b\":\"2\"}".getBytes(StandardCharsets.UTF_8);
+        final String etag = ContentHash.etag(json);
+
+        ResponseEntity<?> result = controller.l10nEncoded(request, "en", "prefix");
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertArrayEquals(json, (byte[]) result.getBody());
+        Assertions.assertEquals(json.length, result.getHeaders().getContentLength());
+        Assertions.assertEquals(MediaType.APPLICATION_JSON, result.getHeaders().getContentType());
+        Assertions.assertEquals(etag, result.getHeaders().getETag());
+        Assertions.assertNull(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        // cached
+        Assertions.assertSame(result.getBody(), controller.l10nEncoded(request, "en", "prefix").getBody());
+
+        // not modified
+        Mockito.when(request.checkNotModified(etag)).thenReturn(true);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, controller.l10nEncoded(request, "en", "prefix").getStatusCode());
+
+        // text changed, served from the cache until reloaded
+        values.put("c", "3");
+        Assertions.assertArrayEquals(json, (byte[]) controller.l10nEncoded(request, "en", "prefix").getBody());
+        controller.onL10NChanged(new L10NChangedEvent(this));
+        result = controller.l10nEncoded(request, "en", "prefix");
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("{\"a\":\"1\",\"b\":\"2\",\"c\":\"3\"}", new String((byte[]) result.getBody(), StandardCharsets.UTF_8));
+
+        // compressed
+        this.setField("compression", true, controller);
+        this.setField("compressionMinLength", 0, controller);
+        Mockito.when(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        result = controller.l10nEncoded(request, "en", "prefix");
+        byte[] body = (byte[]) result.getBody();
+        Assertions.assertEquals("gzip", result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(Arrays.asList(HttpHeaders.ACCEPT_ENCODING), result.getHeaders().getVary());
+        Assertions.assertEquals(body.length, result.getHeaders().getContentLength());
+        Assertions.assertTrue(result.getHeaders().getETag().endsWith("-gzip\""));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            Assertions.assertEquals("{\"a\":\"1\",\"b\":\"2\",\"c\":\"3\"}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Assertions.assertSame(body, controller.l10nEncoded(request, "en", "prefix").getBody());
+
+        // no text
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, controller.l10nEncoded(request, "en", "none").getStatusCode());
+
+        // disabled
+        this.setField("serializedL10n", false, controller);
+        Mockito.when(request.checkNotModified(Mockito.anyString())).thenReturn(false);
+        Mockito.when(l10n.getDefaultLocale()).thenReturn(Locale.ENGLISH);
+        ResponseEntity<?> map = controller.l10nEncoded(request, "en", "prefix");
+        Assertions.assertEquals(HttpStatus.OK, map.getStatusCode());
+        Assertions.assertTrue(map.getBody() instanceof PrimitiveMap);
+        Assertions.assertEquals("3", ((PrimitiveMap<?>) map.getBody()).get("c"));
+    }
+
+    @Test
+    public void test_l10n_serialized_noInstance() {
+        ResourceController controller = new ResourceController();
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, controller.getSerializedL10n(null, null, "prefix").getStatusCode());
+    }
+
+    @Test
+    public void test_l10nBatch() {
+        final L10N l10n = Mockito.mock(L10N.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected L10N getL10N() {
+                return l10n;
+            }
+
+            @Override
+            protected int getL10nMaxPrefixes() {
+                return 3;
+            }
+        };
+        this.setField("enableCaching", true, controller);
+
+        Map<String, String> a = new HashMap<>();
+        a.put("a.1", "one");
+        Map<String, String> b = new HashMap<>();
+        b.put("b.1", "two");
+        Mockito.when(l10n.getDefaultLocale()).thenReturn(Locale.ENGLISH);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "a")).thenReturn(a);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "b")).thenReturn(b);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "c")).thenReturn(new HashMap<>());
+
+        ResponseEntity<?> result = controller.l10nBatch(null, "en", Arrays.asList("b", "a", " a ", ""));
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("{\"a.1\":\"one\",\"b.1\":\"two\"}", new String((byte[]) result.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertNotNull(result.getHeaders().getETag());
+
+        // same document regardless of order
+        Assertions.assertSame(result.getBody(), controller.l10nBatch(null, "en", Arrays.asList("a", "b")).getBody());
+
+        // prefixes without text are ignored
+        Assertions.assertSame(result.getBody(), controller.l10nBatch(null, "en", Arrays.asList("a", "b", "c")).getBody());
+        ResponseEntity<?> single = controller.l10nBatch(null, "en", Arrays.asList("c", "a"));
+        Assertions.assertEquals("{\"a.1\":\"one\"}", new String((byte[]) single.getBody(), StandardCharsets.UTF_8));
+        WeightedCache<String, ?> cache = this.getField("l10nCache", controller);
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("l10n/en/a", "l10n/en/b", "l10n-merged/en/a,b")), cache.keySet());
+
+        // text is only read once per prefix
+        Mockito.verify(l10n, Mockito.times(1)).getPublicText(Locale.ENGLISH, "a");
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, controller.l10nBatch(null, "en", null).getStatusCode());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, controller.l10nBatch(null, "en", Arrays.asList(" ")).getStatusCode());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, controller.l10nBatch(null, "en", Arrays.asList("c")).getStatusCode());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, controller.l10nBatch(null, "en", Arrays.asList("a", "b", "c", "d")).getStatusCode());
+    }
+
+    @Test
+    public void test_l10nBatch_keys() {
+        final L10N l10n = Mockito.mock(L10N.class);
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected L10N getL10N() {
+                return l10n;
+            }
+        };
+        this.setField("enableCaching", true, controller);
+        this.setField("serializedL10n", true, controller);
+
+        Map<String, String> a = new HashMap<>();
+        a.put("a.1", "one");
+        Map<String, String> b = new HashMap<>();
+        b.put("b.1", "two");
+        Map<String, String> ab = new HashMap<>();
+        ab.put("ab.1", "literal");
+        Map<String, String> bc = new HashMap<>();
+        bc.put("bc.1", "three");
+        Mockito.when(l10n.hasLocale(Locale.ENGLISH)).thenReturn(true);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "a")).thenReturn(a);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "b")).thenReturn(b);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "a,b")).thenReturn(ab);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "b,c")).thenReturn(bc);
+
+        // a prefix literally named "a,b" is not the merged document of "a" and "b"
+        ResponseEntity<?> literal = controller.l10nEncoded(null, "en", "a,b");
+        ResponseEntity<?> merged = controller.l10nBatch(null, "en", Arrays.asList("a", "b"));
+        Assertions.assertEquals("{\"ab.1\":\"literal\"}", new String((byte[]) literal.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("{\"a.1\":\"one\",\"b.1\":\"two\"}", new String((byte[]) merged.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertNotEquals(literal.getHeaders().getETag(), merged.getHeaders().getETag());
+
+        // either order of requests
+        Assertions.assertSame(literal.getBody(), controller.l10nEncoded(null, "en", "a,b").getBody());
+        Assertions.assertSame(merged.getBody(), controller.l10nBatch(null, "en", Arrays.asList("b", "a")).getBody());
+
+        // nor is ["a,b", "c"] the same as ["a", "b,c"]
+        Map<String, String> c = new HashMap<>();
+        c.put("c.1", "four");
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "c")).thenReturn(c);
+        ResponseEntity<?> first = controller.l10nBatch(null, "en", Arrays.asList("a,b", "c"));
+        ResponseEntity<?> second = controller.l10nBatch(null, "en", Arrays.asList("a", "b,c"));
+        Assertions.assertEquals("{\"ab.1\":\"literal\",\"c.1\":\"four\"}", new String((byte[]) first.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("{\"a.1\":\"one\",\"bc.1\":\"three\"}", new String((byte[]) second.getBody(), StandardCharsets.UTF_8));
+
+        WeightedCache<String, ?> cache = this.getField("l10nCache", controller);
+        Assertions.assertTrue(cache.keySet().contains("l10n/en/a,b"));
+        Assertions.assertTrue(cache.keySet().contains("l10n-merged/en/a,b"));
+        Assertions.assertTrue(cache.keySet().contains("l10n-merged/en/a\\,b,c"));
+        Assertions.assertTrue(cache.keySet().contains("l10n-merged/en/a,b\\,c"));
+    }
+
+    @Test
+    public void test_l10nBatch_noInstance() {
+        ResourceController controller = new ResourceController();
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, controller.l10nBatch(null, "en", Arrays.asList("a")).getStatusCode());
+    }
+
+    @Test
+    public void test_l10nBundle() {
+        final L10N l10n = Mockito.mock(L10N.class);
+        final Map<String, List<String>> bundles = new HashMap<>();
+        bundles.put("page", Arrays.asList("a", "b"));
+
+        ResourceController controller = new ResourceController() {
+            @Override
+            protected L10N getL10N() {
+                return l10n;
+            }
+
+            @Override
+            protected Map<String, List<String>> getL10nBundles() {
+                return bundles;
+            }
+        };
+
+        Map<String, String> a = new HashMap<>();
+        a.put("a.1", "one");
+        Map<String, String> b = new HashMap<>();
+        b.put("b.1", "two");
+        Mockito.when(l10n.hasLocale(Locale.ENGLISH)).thenReturn(true);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "a")).thenReturn(a);
+        Mockito.when(l10n.getPublicText(Locale.ENGLISH, "b")).thenReturn(b);
+
+        ResponseEntity<?> result = controller.l10nBundle(null, "en", "page");
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("{\"a.1\":\"one\",\"b.1\":\"two\"}", new String((byte[]) result.getBody(), StandardCharsets.UTF_8));
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, controller.l10nBundle(null, "en", "other").getStatusCode());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, new ResourceController().l10nBundle(null, "en", "page").getStatusCode());
+    }
 }
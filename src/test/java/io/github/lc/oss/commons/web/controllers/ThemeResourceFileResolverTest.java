@@ -68,4 +68,17 @@ public class ThemeResourceFileResolverTest extends AbstractMockTest {
         Assertions.assertNotNull(result);
         Assertions.assertTrue(result.isEmpty());
     }
+
+    @Test
+    public void test_forTheme() {
+        Mockito.when(this.userTheme.getName()).thenReturn("theme");
+
+        ThemeResourceFileResolver other = this.resolver.forTheme("other");
+        Assertions.assertEquals("root/other/", other.getRoot());
+        Assertions.assertTrue(other.findFiles(Types.css, null).isEmpty());
+        Assertions.assertEquals("root/theme/", this.resolver.getRoot());
+
+        Assertions.assertNull(this.resolver.forTheme(null).findFiles(Types.css, null));
+        Mockito.verify(this.userTheme, Mockito.times(1)).getName();
+    }
 }
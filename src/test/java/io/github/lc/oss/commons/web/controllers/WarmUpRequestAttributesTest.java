@@ -0,0 +1,45 @@
+package io.github.lc.oss.commons.web.controllers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.context.request.RequestAttributes;
+
+import io.github.lc.oss.commons.testing.AbstractTest;
+
+public class WarmUpRequestAttributesTest extends AbstractTest {
+    @Test
+    public void test_attributes() {
+        WarmUpRequestAttributes attributes = new WarmUpRequestAttributes();
+
+        attributes.setAttribute("a", "request", RequestAttributes.SCOPE_REQUEST);
+        attributes.setAttribute("a", "session", RequestAttributes.SCOPE_SESSION);
+        Assertions.assertEquals("request", attributes.getAttribute("a", RequestAttributes.SCOPE_REQUEST));
+        Assertions.assertEquals("session", attributes.getAttribute("a", RequestAttributes.SCOPE_SESSION));
+        Assertions.assertArrayEquals(new String[] { "a" }, attributes.getAttributeNames(RequestAttributes.SCOPE_REQUEST));
+
+        attributes.removeAttribute("a", RequestAttributes.SCOPE_REQUEST);
+        Assertions.assertNull(attributes.getAttribute("a", RequestAttributes.SCOPE_REQUEST));
+        Assertions.assertEquals("session", attributes.getAttribute("a", RequestAttributes.SCOPE_SESSION));
+
+        Assertions.assertNull(attributes.resolveReference("request"));
+        Assertions.assertEquals("", attributes.getSessionId());
+        Assertions.assertNotNull(attributes.getSessionMutex());
+    }
+
+    @Test
+    public void test_destructionCallbacks() {
+        AtomicInteger destroyed = new AtomicInteger();
+        WarmUpRequestAttributes attributes = new WarmUpRequestAttributes();
+
+        attributes.setAttribute("a", "value", RequestAttributes.SCOPE_REQUEST);
+        attributes.registerDestructionCallback("a", destroyed::incrementAndGet, RequestAttributes.SCOPE_REQUEST);
+        attributes.setAttribute("b", "value", RequestAttributes.SCOPE_REQUEST);
+        attributes.registerDestructionCallback("b", destroyed::incrementAndGet, RequestAttributes.SCOPE_REQUEST);
+        attributes.removeAttribute("b", RequestAttributes.SCOPE_REQUEST);
+
+        attributes.requestCompleted();
+        Assertions.assertEquals(1, destroyed.get());
+    }
+}
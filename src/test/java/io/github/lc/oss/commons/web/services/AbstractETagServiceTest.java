@@ -2,10 +2,22 @@ package io.github.lc.oss.commons.web.services;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import io.github.lc.oss.commons.encoding.Encodings;
+import io.github.lc.oss.commons.hashing.Hashes;
 import io.github.lc.oss.commons.testing.AbstractMockTest;
 
 public class AbstractETagServiceTest extends AbstractMockTest {
@@ -120,6 +132,26 @@ public class AbstractETagServiceTest extends AbstractMockTest {
         Assertions.assertEquals(result, result2);
     }
 
+    @Test
+    public void test_getETag_expired_clock() {
+        ETagService service = new TestService();
+        /* ahead of the system clock so only the injected clock expires entries */
+        Instant hour = Instant.now().plus(2, ChronoUnit.HOURS).truncatedTo(ChronoUnit.HOURS);
+        this.setField("clock", Clock.fixed(hour, ZoneOffset.UTC), service);
+        service.setEnabled(true);
+        Assertions.assertTrue(service.isEnabled());
+
+        String result = service.getETag("cache-id");
+
+        // expiry follows the injected clock, not the wall clock
+        String result2 = service.getETag("cache-id");
+        Assertions.assertSame(result, result2);
+
+        this.setField("clock", Clock.fixed(hour.plusSeconds(3601), ZoneOffset.UTC), service);
+        String result3 = service.getETag("cache-id");
+        Assertions.assertNotEquals(result, result3);
+    }
+
     @Test
     public void test_getETag_nullId_disabled() {
         ETagService service = new TestService();
@@ -283,6 +315,143 @@ public class AbstractETagServiceTest extends AbstractMockTest {
         Assertions.assertEquals(result, result2);
     }
 
+    @Test
+    public void test_evictETag_null() {
+        ETagService service = new TestService();
+
+        service.evictETag(null);
+    }
+
+    @Test
+    public void test_getETag_bounded() {
+        ETagService service = new TestService();
+        this.setField("clock", Clock.systemDefaultZone(), service);
+        this.setField("maxEntries", 10, service);
+        service.setEnabled(true);
+
+        String first = service.getETag("id-0");
+        for (int i = 1; i < 20; i++) {
+            service.getETag("id-" + i);
+        }
+
+        String again = service.getETag("id-0");
+        Assertions.assertNotSame(first, again);
+        Assertions.assertEquals(first, again);
+    }
+
+    @Test
+    public void test_getETag_concurrent() throws Exception {
+        AtomicInteger versions = new AtomicInteger();
+        ETagService service = new TestService() {
+            @Override
+            protected String getAppVersion() {
+                versions.incrementAndGet();
+                return super.getAppVersion();
+            }
+        };
+        this.setField("clock", Clock.systemDefaultZone(), service);
+        service.setEnabled(true);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(pool.submit(() -> service.getETag("cache-id")));
+            }
+
+            String expected = results.get(0).get();
+            for (Future<String> result : results) {
+                Assertions.assertSame(expected, result.get());
+            }
+            Assertions.assertEquals(1, versions.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_getETag_format() {
+        ETagService service = new TestService();
+        Instant hour = Instant.parse("2020-01-01T10:00:00Z");
+        this.setField("clock", Clock.fixed(hour.plusSeconds(125), ZoneOffset.UTC), service);
+        service.setEnabled(true);
+
+        Assertions.assertEquals(String.format("W/\"%s\"", Hashes.MD5.hash("cache-id0.0.0-Test" + hour.toString(), Encodings.Base64)),
+                service.getETag("cache-id"));
+        Assertions.assertEquals(String.format("W/\"%s\"", Hashes.MD5.hash("cach\u00e9-id0.0.0-Test" + hour.toString(), Encodings.Base64)),
+                service.getETag("cach\u00e9-id"));
+
+        String longId = "x".repeat(1000);
+        Assertions.assertEquals(String.format("W/\"%s\"", Hashes.MD5.hash(longId + "0.0.0-Test" + hour.toString(), Encodings.Base64)),
+                service.getETag(longId));
+    }
+
+    @Test
+    public void test_getETag_hourChange() {
+        ETagService service = new TestService();
+        Instant hour = Instant.parse("2020-01-01T10:00:00Z");
+        service.setEnabled(true);
+
+        this.setField("clock", Clock.fixed(hour, ZoneOffset.UTC), service);
+        String result = service.getETag("cache-id");
+        this.setField("clock", Clock.fixed(hour.plusSeconds(3599), ZoneOffset.UTC), service);
+        Assertions.assertEquals(result, service.getETag("cache-id"));
+        this.setField("clock", Clock.fixed(hour.plusSeconds(3600), ZoneOffset.UTC), service);
+        Assertions.assertNotEquals(result, service.getETag("cache-id"));
+    }
+
+    @Test
+    public void test_precompute() {
+        AbstractETagService service = new TestService() {
+            @Override
+            protected Collection<String> getPrecomputeKeys() {
+                List<String> keys = new ArrayList<>(super.getPrecomputeKeys());
+                keys.add("not-requested-yet");
+                return keys;
+            }
+        };
+        Instant hour = Instant.parse("2020-01-01T10:00:00Z");
+        this.setField("clock", Clock.fixed(hour.plusSeconds(3590), ZoneOffset.UTC), service);
+        service.setEnabled(true);
+
+        String current = service.getETag("cache-id");
+        service.precompute();
+        Map<String, ?> etags = this.getField("etags", this.getField("precomputed", service));
+        String precomputedCurrent = this.getField("value", etags.get("cache-id"));
+        String precomputedNew = this.getField("value", etags.get("not-requested-yet"));
+        // precomputed entries are for the next hour only
+        Assertions.assertNotEquals(precomputedNew, service.getETag("not-requested-yet"));
+
+        this.setField("clock", Clock.fixed(hour.plusSeconds(3600), ZoneOffset.UTC), service);
+        String next = service.getETag("cache-id");
+        Assertions.assertNotEquals(current, next);
+        // identical instances can only come from the precomputed table
+        Assertions.assertSame(precomputedCurrent, next);
+        Assertions.assertSame(precomputedNew, service.getETag("not-requested-yet"));
+        Assertions.assertNull(etags.get("other"));
+        Assertions.assertNotNull(service.getETag("other"));
+    }
+
+    @Test
+    public void test_precompute_lifecycle() throws Exception {
+        AbstractETagService service = new TestService();
+        this.setField("clock", Clock.systemUTC(), service);
+
+        service.afterPropertiesSet();
+        Assertions.assertNull(this.getField("scheduler", service));
+
+        this.setField("precomputeEnabled", true, service);
+        this.setField("precomputeLeadSeconds", 3600, service);
+        service.afterPropertiesSet();
+        Assertions.assertNotNull(this.getField("scheduler", service));
+        // inside the lead window the first table is built immediately
+        this.waitUntil(() -> this.getField("precomputed", service) != null);
+
+        service.destroy();
+        Assertions.assertNull(this.getField("scheduler", service));
+        service.destroy();
+    }
+
     private void delay() {
         final long now = System.currentTimeMillis();
         this.waitUntil(() -> System.currentTimeMillis() >= now + 100);
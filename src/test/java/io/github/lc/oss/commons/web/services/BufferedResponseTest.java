@@ -0,0 +1,51 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class BufferedResponseTest extends AbstractMockTest {
+    @Test
+    public void test_read() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Test", "1");
+        ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+        Mockito.when(response.getStatusCode()).thenReturn(HttpStatus.ACCEPTED);
+        Mockito.when(response.getHeaders()).thenReturn(headers);
+        Mockito.when(response.getBody()).thenReturn(new ByteArrayInputStream("data".getBytes(StandardCharsets.UTF_8)));
+
+        BufferedResponse buffered = BufferedResponse.read(response);
+        Mockito.verify(response).close();
+        headers.set("X-Test", "2");
+
+        ClientHttpResponse a = buffered.toResponse();
+        ClientHttpResponse b = buffered.toResponse();
+        a.getHeaders().set("X-Test", "3");
+
+        Assertions.assertEquals(HttpStatus.ACCEPTED, b.getStatusCode());
+        Assertions.assertEquals("Accepted", b.getStatusText());
+        Assertions.assertEquals("1", b.getHeaders().getFirst("X-Test"));
+        Assertions.assertEquals("data", StreamUtils.copyToString(a.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("data", StreamUtils.copyToString(b.getBody(), StandardCharsets.UTF_8));
+        a.close();
+        b.close();
+    }
+
+    @Test
+    public void test_unknownStatus() {
+        BufferedResponse buffered = new BufferedResponse(HttpStatusCode.valueOf(599), new HttpHeaders(), new byte[0]);
+
+        Assertions.assertEquals("", buffered.toResponse().getStatusText());
+        Assertions.assertEquals(0, buffered.getBody().length);
+    }
+}
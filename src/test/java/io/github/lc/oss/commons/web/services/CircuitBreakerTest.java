@@ -0,0 +1,102 @@
+package io.github.lc.oss.commons.web.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractTest;
+
+public class CircuitBreakerTest extends AbstractTest {
+    private static class TestBreaker extends CircuitBreaker {
+        private long now = 1000;
+
+        public TestBreaker(int failureThreshold, long openDuration) {
+            super(failureThreshold, openDuration);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return this.now;
+        }
+    }
+
+    @Test
+    public void test_closed() {
+        CircuitBreaker breaker = new TestBreaker(2, 100);
+        Assertions.assertEquals(CircuitBreaker.States.Closed, breaker.getState());
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assertions.assertEquals(CircuitBreaker.States.Closed, breaker.getState());
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        Assertions.assertEquals(CircuitBreaker.States.Closed, breaker.getState());
+
+        // success resets the consecutive failure count
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assertions.assertEquals(CircuitBreaker.States.Closed, breaker.getState());
+    }
+
+    @Test
+    public void test_open_halfOpen_closed() {
+        TestBreaker breaker = new TestBreaker(2, 100);
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assertions.assertEquals(CircuitBreaker.States.Open, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquire());
+
+        breaker.now += 100;
+        Assertions.assertEquals(CircuitBreaker.States.HalfOpen, breaker.getState());
+
+        // only a single probe is allowed
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        Assertions.assertEquals(CircuitBreaker.States.Closed, breaker.getState());
+        Assertions.assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void test_halfOpen_failure() {
+        TestBreaker breaker = new TestBreaker(1, 100);
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assertions.assertFalse(breaker.tryAcquire());
+
+        breaker.now += 150;
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assertions.assertEquals(CircuitBreaker.States.Open, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void test_halfOpen_release() {
+        TestBreaker breaker = new TestBreaker(1, 100);
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+
+        breaker.now += 100;
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertFalse(breaker.tryAcquire());
+
+        breaker.release();
+        Assertions.assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void test_minimumThreshold() {
+        CircuitBreaker breaker = new TestBreaker(0, 100);
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assertions.assertEquals(CircuitBreaker.States.Open, breaker.getState());
+    }
+}
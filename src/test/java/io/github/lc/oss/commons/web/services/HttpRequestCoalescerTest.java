@@ -0,0 +1,207 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class HttpRequestCoalescerTest extends AbstractMockTest {
+    private HttpRequestCoalescer coalescer;
+    private ClientHttpRequestExecution execution;
+    private ExecutorService pool;
+
+    @BeforeEach
+    public void init() {
+        this.coalescer = new HttpRequestCoalescer(Arrays.asList(HttpHeaders.AUTHORIZATION));
+        this.execution = Mockito.mock(ClientHttpRequestExecution.class);
+        this.pool = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.pool.shutdownNow();
+    }
+
+    private HttpRequest request(HttpMethod method, String url) {
+        HttpRequest request = Mockito.mock(HttpRequest.class);
+        HttpHeaders headers = new HttpHeaders();
+        Mockito.when(request.getMethod()).thenReturn(method);
+        Mockito.when(request.getURI()).thenReturn(URI.create(url));
+        Mockito.when(request.getHeaders()).thenReturn(headers);
+        return request;
+    }
+
+    private ClientHttpResponse response(String body) throws IOException {
+        ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+        Mockito.when(response.getStatusCode()).thenReturn(HttpStatus.OK);
+        Mockito.when(response.getHeaders()).thenReturn(new HttpHeaders());
+        Mockito.when(response.getBody()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        return response;
+    }
+
+    @Test
+    public void test_keyHeaders_null() {
+        Assertions.assertTrue(new HttpRequestCoalescer(null).getKeyHeaders().isEmpty());
+    }
+
+    @Test
+    public void test_toKey() {
+        HttpRequest request = this.request(HttpMethod.GET, "http://localhost/a");
+        Assertions.assertEquals("GET http://localhost/a", this.coalescer.toKey(request));
+
+        request.getHeaders().setBearerAuth("token");
+        request.getHeaders().setIfNoneMatch("\"v1\"");
+        request.getHeaders().set(HttpHeaders.ACCEPT, "text/plain");
+        Assertions.assertEquals("GET http://localhost/a\nauthorization:Bearer token\nif-none-match:\"v1\"",
+                this.coalescer.toKey(request));
+    }
+
+    @Test
+    public void test_toKey_credentialsAlwaysIncluded() {
+        HttpRequestCoalescer test = new HttpRequestCoalescer(Arrays.asList(HttpHeaders.ACCEPT));
+        HttpRequest request = this.request(HttpMethod.GET, "http://localhost/a");
+        request.getHeaders().set(HttpHeaders.ACCEPT, "text/plain");
+        request.getHeaders().setBearerAuth("token");
+        request.getHeaders().set(HttpHeaders.COOKIE, "session=1");
+        Assertions.assertEquals("GET http://localhost/a\naccept:text/plain\nauthorization:Bearer token\ncookie:session=1",
+                test.toKey(request));
+    }
+
+    @Test
+    public void test_notGet() throws Exception {
+        ClientHttpResponse response = this.response("");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(response);
+
+        Assertions.assertSame(response, this.coalescer.intercept(this.request(HttpMethod.POST, "http://localhost/a"), new byte[0],
+                this.execution));
+        Assertions.assertEquals(0, this.coalescer.getExecutions());
+    }
+
+    @Test
+    public void test_singleFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ClientHttpResponse response = this.response("data");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return response;
+        });
+
+        List<Future<String>> results = new ArrayList<>();
+        results.add(this.pool.submit(() -> this.read(this.request(HttpMethod.GET, "http://localhost/a"))));
+        started.await();
+        for (int i = 0; i < 3; i++) {
+            results.add(this.pool.submit(() -> this.read(this.request(HttpMethod.GET, "http://localhost/a"))));
+        }
+        this.waitUntil(() -> this.coalescer.getCoalesced() == 3);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            Assertions.assertEquals("data", result.get());
+        }
+        Assertions.assertEquals(1, this.coalescer.getExecutions());
+        Mockito.verify(this.execution, Mockito.times(1)).execute(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.verify(response).close();
+
+        // nothing is retained once the exchange completes
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(this.response("again"));
+        Assertions.assertEquals("again", this.read(this.request(HttpMethod.GET, "http://localhost/a")));
+        Assertions.assertEquals(2, this.coalescer.getExecutions());
+    }
+
+    @Test
+    public void test_singleFlight_error() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            throw new IOException("boom");
+        });
+
+        Future<String> leader = this.pool.submit(() -> this.read(this.request(HttpMethod.GET, "http://localhost/a")));
+        started.await();
+        Future<String> follower = this.pool.submit(() -> this.read(this.request(HttpMethod.GET, "http://localhost/a")));
+        this.waitUntil(() -> this.coalescer.getCoalesced() == 1);
+        release.countDown();
+
+        for (Future<String> result : Arrays.asList(leader, follower)) {
+            try {
+                result.get();
+                Assertions.fail("Expected exception");
+            } catch (ExecutionException ex) {
+                Assertions.assertEquals("boom", ex.getCause().getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void test_singleFlight_followerTimeout() throws Exception {
+        HttpRequestCoalescer test = new HttpRequestCoalescer(null, () -> 50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ClientHttpResponse response = this.response("data");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return response;
+        });
+
+        Future<ClientHttpResponse> leader = this.pool.submit(() -> test.intercept(this.request(HttpMethod.GET, "http://localhost/a"),
+                new byte[0], this.execution));
+        started.await();
+        try {
+            test.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+            Assertions.fail("Expected exception");
+        } catch (SocketTimeoutException ex) {
+            Assertions.assertEquals("Timed out after 50ms waiting for in-flight request", ex.getMessage());
+        }
+
+        release.countDown();
+        Assertions.assertNotNull(leader.get());
+    }
+
+    @Test
+    public void test_differentKeys() throws Exception {
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(this.response("a"),
+                this.response("b"));
+
+        HttpRequest other = this.request(HttpMethod.GET, "http://localhost/a");
+        other.getHeaders().setBearerAuth("token");
+        Assertions.assertEquals("a", this.read(this.request(HttpMethod.GET, "http://localhost/a")));
+        Assertions.assertEquals("b", this.read(other));
+        Assertions.assertEquals(2, this.coalescer.getExecutions());
+        Assertions.assertEquals(0, this.coalescer.getCoalesced());
+    }
+
+    private String read(HttpRequest request) throws IOException {
+        ClientHttpResponse response = this.coalescer.intercept(request, new byte[0], this.execution);
+        return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,296 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class HttpResponseCacheTest extends AbstractMockTest {
+    private static class TestCache extends HttpResponseCache {
+        private long now = 1000000;
+
+        public TestCache(long maxSize, long maxEntrySize) {
+            super(maxSize, maxEntrySize);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return this.now;
+        }
+    }
+
+    private TestCache cache;
+    private ClientHttpRequestExecution execution;
+
+    @BeforeEach
+    public void init() {
+        this.cache = new TestCache(1024 * 1024, 1024);
+        this.execution = Mockito.mock(ClientHttpRequestExecution.class);
+    }
+
+    private HttpRequest request(HttpMethod method, String url) {
+        HttpRequest request = Mockito.mock(HttpRequest.class);
+        HttpHeaders headers = new HttpHeaders();
+        Mockito.when(request.getMethod()).thenReturn(method);
+        Mockito.when(request.getURI()).thenReturn(URI.create(url));
+        Mockito.when(request.getHeaders()).thenReturn(headers);
+        return request;
+    }
+
+    private ClientHttpResponse response(HttpStatus status, HttpHeaders headers, String body) throws IOException {
+        ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+        Mockito.when(response.getStatusCode()).thenReturn(status);
+        Mockito.when(response.getHeaders()).thenReturn(headers);
+        Mockito.when(response.getBody()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        return response;
+    }
+
+    private String read(ClientHttpResponse response) throws IOException {
+        return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void test_maxAge() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("public, max-age=60");
+        headers.set(HttpHeaders.AGE, "10");
+        ClientHttpResponse response = this.response(HttpStatus.OK, headers, "data");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(response);
+
+        ClientHttpResponse result = this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        Assertions.assertEquals("data", this.read(result));
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("OK", result.getStatusText());
+
+        this.cache.now += 49 * 1000;
+        result = this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        Assertions.assertEquals("data", this.read(result));
+        result.close();
+
+        Mockito.verify(this.execution, Mockito.times(1)).execute(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Mockito.verify(response).close();
+        Assertions.assertEquals(1, this.cache.getHits());
+        Assertions.assertEquals(1, this.cache.getMisses());
+        Assertions.assertEquals(1, this.cache.size());
+
+        // stale without validators: fetched again
+        this.cache.now += 2 * 1000;
+        Mockito.when(response.getBody()).thenReturn(new ByteArrayInputStream("data".getBytes(StandardCharsets.UTF_8)));
+        this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        Mockito.verify(this.execution, Mockito.times(2)).execute(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_expires() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setDate(this.cache.now);
+        headers.setExpires(this.cache.now + 5000);
+        ClientHttpResponse response = this.response(HttpStatus.OK, headers, "data");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(response);
+
+        this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+
+        Mockito.verify(this.execution, Mockito.times(1)).execute(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Assertions.assertEquals(1, this.cache.getHits());
+    }
+
+    @Test
+    public void test_revalidate() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag("\"v1\"");
+        headers.set(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT");
+        headers.setCacheControl("max-age=0");
+        ClientHttpResponse ok = this.response(HttpStatus.OK, headers, "data");
+        HttpHeaders notModifiedHeaders = new HttpHeaders();
+        notModifiedHeaders.setCacheControl("max-age=60");
+        ClientHttpResponse notModified = this.response(HttpStatus.NOT_MODIFIED, notModifiedHeaders, "");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(ok, notModified);
+
+        this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+
+        HttpRequest request = this.request(HttpMethod.GET, "http://localhost/a");
+        ClientHttpResponse result = this.cache.intercept(request, new byte[0], this.execution);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("data", this.read(result));
+        Assertions.assertEquals("max-age=60", result.getHeaders().getCacheControl());
+        Assertions.assertEquals("\"v1\"", request.getHeaders().getIfNoneMatch().get(0));
+        Assertions.assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", request.getHeaders().getFirst(HttpHeaders.IF_MODIFIED_SINCE));
+        Assertions.assertEquals(1, this.cache.getRevalidations());
+        Mockito.verify(notModified).close();
+
+        // now fresh from the 304 headers
+        this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        Mockito.verify(this.execution, Mockito.times(2)).execute(ArgumentMatchers.any(), ArgumentMatchers.any());
+        Assertions.assertEquals(1, this.cache.getHits());
+    }
+
+    @Test
+    public void test_revalidate_changed() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag("\"v1\"");
+        ClientHttpResponse first = this.response(HttpStatus.OK, headers, "one");
+        HttpHeaders headers2 = new HttpHeaders();
+        headers2.setETag("\"v2\"");
+        ClientHttpResponse second = this.response(HttpStatus.OK, headers2, "two");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(first, second);
+
+        this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        ClientHttpResponse result = this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0],
+                this.execution);
+
+        Assertions.assertEquals("two", this.read(result));
+        Assertions.assertEquals(0, this.cache.getRevalidations());
+        Assertions.assertEquals(2, this.cache.getMisses());
+    }
+
+    @Test
+    public void test_notCached() throws Exception {
+        HttpHeaders noStore = new HttpHeaders();
+        noStore.setCacheControl("no-store");
+        HttpHeaders varyAll = new HttpHeaders();
+        varyAll.setCacheControl("max-age=60");
+        varyAll.setVary(Arrays.asList("*"));
+        HttpHeaders noValidators = new HttpHeaders();
+        HttpHeaders tooLarge = new HttpHeaders();
+        tooLarge.setCacheControl("max-age=60");
+        tooLarge.setContentLength(4096);
+        HttpHeaders error = new HttpHeaders();
+        error.setCacheControl("max-age=60");
+
+        ClientHttpResponse[] responses = new ClientHttpResponse[] { //
+                this.response(HttpStatus.OK, noStore, "a"), //
+                this.response(HttpStatus.OK, varyAll, "b"), //
+                this.response(HttpStatus.OK, noValidators, "c"), //
+                this.response(HttpStatus.OK, tooLarge, "d"), //
+                this.response(HttpStatus.NOT_FOUND, error, "e") //
+        };
+        for (ClientHttpResponse response : responses) {
+            Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(response);
+            ClientHttpResponse result = this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0],
+                    this.execution);
+            Assertions.assertSame(response, result);
+        }
+        Assertions.assertEquals(0, this.cache.size());
+    }
+
+    @Test
+    public void test_bodyTooLarge() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60");
+        String body = "x".repeat(2048);
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(this.response(HttpStatus.OK, headers, body));
+
+        ClientHttpResponse result = this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        Assertions.assertEquals(body, this.read(result));
+        Assertions.assertEquals(0, this.cache.size());
+    }
+
+    @Test
+    public void test_bypass() throws Exception {
+        ClientHttpResponse response = this.response(HttpStatus.OK, new HttpHeaders(), "");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(response);
+
+        Assertions.assertSame(response, this.cache.intercept(this.request(HttpMethod.POST, "http://localhost/a"), new byte[0], this.execution));
+
+        HttpRequest request = this.request(HttpMethod.GET, "http://localhost/a");
+        request.getHeaders().setCacheControl("no-store");
+        Assertions.assertSame(response, this.cache.intercept(request, new byte[0], this.execution));
+
+        request = this.request(HttpMethod.GET, "http://localhost/a");
+        request.getHeaders().setIfNoneMatch("\"x\"");
+        Assertions.assertSame(response, this.cache.intercept(request, new byte[0], this.execution));
+
+        request = this.request(HttpMethod.GET, "http://localhost/a");
+        request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 21 Oct 2015 07:28:00 GMT");
+        Assertions.assertSame(response, this.cache.intercept(request, new byte[0], this.execution));
+
+        Assertions.assertEquals(0, this.cache.getMisses());
+    }
+
+    @Test
+    public void test_requestNoCache() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn( //
+                this.response(HttpStatus.OK, headers, "one"), //
+                this.response(HttpStatus.OK, headers, "two"));
+
+        this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        HttpRequest request = this.request(HttpMethod.GET, "http://localhost/a");
+        request.getHeaders().setCacheControl("no-cache");
+        ClientHttpResponse result = this.cache.intercept(request, new byte[0], this.execution);
+
+        // no validators so the entry cannot be revalidated; a full fetch is made
+        Assertions.assertEquals("two", this.read(result));
+    }
+
+    @Test
+    public void test_vary() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60");
+        headers.setVary(Arrays.asList(HttpHeaders.ACCEPT_LANGUAGE));
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn( //
+                this.response(HttpStatus.OK, headers, "en"), //
+                this.response(HttpStatus.OK, headers, "fr"));
+
+        HttpRequest en = this.request(HttpMethod.GET, "http://localhost/a");
+        en.getHeaders().set(HttpHeaders.ACCEPT_LANGUAGE, "en");
+        this.cache.intercept(en, new byte[0], this.execution);
+
+        HttpRequest fr = this.request(HttpMethod.GET, "http://localhost/a");
+        fr.getHeaders().set(HttpHeaders.ACCEPT_LANGUAGE, "fr");
+        Assertions.assertEquals("fr", this.read(this.cache.intercept(fr, new byte[0], this.execution)));
+
+        Mockito.verify(this.execution, Mockito.times(2)).execute(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_authorizationInKey() throws Exception {
+        HttpRequest anonymous = this.request(HttpMethod.GET, "http://localhost/a");
+        HttpRequest user = this.request(HttpMethod.GET, "http://localhost/a");
+        user.getHeaders().setBearerAuth("token");
+
+        Assertions.assertEquals("http://localhost/a", this.cache.toKey(anonymous));
+        Assertions.assertEquals("http://localhost/a|Bearer token", this.cache.toKey(user));
+    }
+
+    @Test
+    public void test_cookieInKey() throws Exception {
+        HttpRequest user = this.request(HttpMethod.GET, "http://localhost/a");
+        user.getHeaders().add(HttpHeaders.COOKIE, "session=1");
+        user.getHeaders().add(HttpHeaders.COOKIE, "theme=dark");
+
+        Assertions.assertEquals("http://localhost/a|cookie:session=1; theme=dark", this.cache.toKey(user));
+    }
+
+    @Test
+    public void test_clear() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60");
+        Mockito.when(this.execution.execute(ArgumentMatchers.any(), ArgumentMatchers.any())).thenReturn(this.response(HttpStatus.OK, headers, "data"));
+
+        this.cache.intercept(this.request(HttpMethod.GET, "http://localhost/a"), new byte[0], this.execution);
+        Assertions.assertEquals(1, this.cache.size());
+
+        this.cache.clear();
+        Assertions.assertEquals(0, this.cache.size());
+        Assertions.assertEquals(0, this.cache.getEvictions());
+    }
+}
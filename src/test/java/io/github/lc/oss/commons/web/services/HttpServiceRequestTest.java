@@ -0,0 +1,35 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+
+import io.github.lc.oss.commons.testing.AbstractTest;
+
+public class HttpServiceRequestTest extends AbstractTest {
+    @Test
+    public void test_getters() {
+        Map<String, String> headers = new HashMap<>();
+        Object body = new Object();
+
+        HttpServiceRequest<String> request = new HttpServiceRequest<>(HttpMethod.POST, "http://localhost", headers, String.class, body);
+        Assertions.assertEquals(HttpMethod.POST, request.getMethod());
+        Assertions.assertEquals("http://localhost", request.getUrl());
+        Assertions.assertSame(headers, request.getHeaders());
+        Assertions.assertEquals(String.class, request.getResponseType());
+        Assertions.assertSame(body, request.getBody());
+    }
+
+    @Test
+    public void test_getters_minimal() {
+        HttpServiceRequest<String> request = new HttpServiceRequest<>(HttpMethod.GET, "http://localhost", String.class);
+        Assertions.assertEquals(HttpMethod.GET, request.getMethod());
+        Assertions.assertEquals("http://localhost", request.getUrl());
+        Assertions.assertNull(request.getHeaders());
+        Assertions.assertEquals(String.class, request.getResponseType());
+        Assertions.assertNull(request.getBody());
+    }
+}
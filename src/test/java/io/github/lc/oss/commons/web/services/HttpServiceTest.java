@@ -1,8 +1,29 @@
 package io.github.lc.oss.commons.web.services;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,20 +33,92 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
+import com.sun.net.httpserver.HttpServer;
+
 import io.github.lc.oss.commons.testing.AbstractMockTest;
 
 public class HttpServiceTest extends AbstractMockTest {
 
     private HttpService service;
+    private HttpServer server;
+    private final AtomicInteger serverHits = new AtomicInteger();
 
     @BeforeEach
     public void init() {
         this.service = new HttpService();
     }
 
+    @AfterEach
+    public void cleanup() throws Exception {
+        this.service.destroy();
+        if (this.server != null) {
+            this.server.stop(0);
+            this.server = null;
+        }
+    }
+
+    private String startServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/stream", exchange -> {
+            byte[] bytes = "streamed-content".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        this.server.createContext("/echo", exchange -> {
+            byte[] bytes = exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        this.server.createContext("/slow", exchange -> {
+            this.serverHits.incrementAndGet();
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        this.server.createContext("/flaky", exchange -> {
+            if (this.serverHits.incrementAndGet() <= 2) {
+                exchange.sendResponseHeaders(503, -1);
+            } else {
+                byte[] bytes = "ok".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        });
+        this.server.createContext("/error", exchange -> {
+            this.serverHits.incrementAndGet();
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        this.server.createContext("/cached", exchange -> {
+            this.serverHits.incrementAndGet();
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] bytes = "cached".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        });
+        this.server.start();
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
     @Test
     public void test_call_badUrl() {
         try {
@@ -120,4 +213,556 @@ public class HttpServiceTest extends AbstractMockTest {
         Assertions.assertNotNull(template);
         Assertions.assertSame(errorHandler, template.getErrorHandler());
     }
+
+    @Test
+    public void test_getRestTemplate_shared() throws Exception {
+        HttpService test = new HttpService();
+
+        RestTemplate result = test.getRestTemplate();
+        Assertions.assertNotNull(result);
+        Assertions.assertSame(result, test.getRestTemplate());
+
+        test.destroy();
+
+        RestTemplate result2 = test.getRestTemplate();
+        Assertions.assertNotNull(result2);
+        Assertions.assertNotSame(result, result2);
+
+        test.destroy();
+        // no-op when already closed
+        test.destroy();
+    }
+
+    @Test
+    public void test_call_reusesTemplate() {
+        RestTemplate template = Mockito.mock(RestTemplate.class);
+        final int[] count = new int[] { 0 };
+        HttpService test = new HttpService() {
+            @Override
+            public RestTemplate createRestTemplate() {
+                count[0]++;
+                return template;
+            }
+        };
+
+        Mockito.when(template.exchange(ArgumentMatchers.notNull(), ArgumentMatchers.eq(HttpMethod.GET), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(Object.class))).thenReturn(new ResponseEntity<>(HttpStatus.NO_CONTENT));
+
+        test.call(HttpMethod.GET, "http://localhost", null, Object.class, null);
+        test.call(HttpMethod.GET, "http://localhost", null, Object.class, null);
+        Assertions.assertEquals(1, count[0]);
+    }
+
+    @Test
+    public void test_keepAliveStrategy() {
+        ConnectionKeepAliveStrategy strategy = this.service.createKeepAliveStrategy();
+
+        BasicHttpResponse response = new BasicHttpResponse(200);
+        Assertions.assertEquals(HttpService.DEFAULT_KEEP_ALIVE, strategy.getKeepAliveDuration(response, HttpClientContext.create()).toMilliseconds());
+
+        response.addHeader("Keep-Alive", "timeout=5");
+        Assertions.assertEquals(5000, strategy.getKeepAliveDuration(response, HttpClientContext.create()).toMilliseconds());
+
+        BasicHttpResponse longResponse = new BasicHttpResponse(200);
+        longResponse.addHeader("Keep-Alive", "timeout=3600");
+        Assertions.assertEquals(HttpService.DEFAULT_KEEP_ALIVE, strategy.getKeepAliveDuration(longResponse, HttpClientContext.create()).toMilliseconds());
+    }
+
+    @Test
+    public void test_poolDefaults() {
+        Assertions.assertEquals(HttpService.DEFAULT_POOL_MAX_TOTAL, this.service.getPoolMaxTotal());
+        Assertions.assertEquals(HttpService.DEFAULT_POOL_MAX_PER_ROUTE, this.service.getPoolMaxPerRoute());
+        Assertions.assertEquals(HttpService.DEFAULT_POOL_EVICT_IDLE, this.service.getPoolEvictIdle());
+        Assertions.assertEquals(HttpService.DEFAULT_POOL_TIME_TO_LIVE, this.service.getPoolTimeToLive());
+        Assertions.assertEquals(HttpService.DEFAULT_KEEP_ALIVE, this.service.getKeepAlive());
+    }
+
+    @Test
+    public void test_callAsync() {
+        RestTemplate template = Mockito.mock(RestTemplate.class);
+        HttpService test = new HttpService() {
+            @Override
+            public RestTemplate createRestTemplate() {
+                return template;
+            }
+        };
+
+        Mockito.when(template.exchange(ArgumentMatchers.notNull(), ArgumentMatchers.eq(HttpMethod.GET), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(Object.class))).thenReturn(new ResponseEntity<>(HttpStatus.NO_CONTENT));
+
+        CompletableFuture<ResponseEntity<Object>> future = test.callAsync(HttpMethod.GET, "http://localhost", null, Object.class, null);
+        ResponseEntity<Object> result = future.join();
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
+    }
+
+    @Test
+    public void test_callAsync_customExecutor() {
+        RestTemplate template = Mockito.mock(RestTemplate.class);
+        HttpService test = new HttpService() {
+            @Override
+            public RestTemplate createRestTemplate() {
+                return template;
+            }
+        };
+        final AtomicInteger count = new AtomicInteger();
+        Executor executor = r -> {
+            count.incrementAndGet();
+            r.run();
+        };
+        this.setField("executor", executor, test);
+
+        Mockito.when(template.exchange(ArgumentMatchers.notNull(), ArgumentMatchers.eq(HttpMethod.GET), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(Object.class))).thenReturn(new ResponseEntity<>(HttpStatus.NO_CONTENT));
+
+        ResponseEntity<Object> result = test.callAsync(HttpMethod.GET, "http://localhost", null, Object.class, null).join();
+        Assertions.assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
+        Assertions.assertEquals(1, count.get());
+        Assertions.assertSame(executor, test.getExecutor());
+    }
+
+    @Test
+    public void test_getAsyncPoolSize() {
+        HttpService test = new HttpService();
+        Assertions.assertEquals(64, test.getAsyncPoolSize());
+
+        this.setField("asyncMaxConcurrent", 0, test);
+        Assertions.assertEquals(1, test.getAsyncPoolSize());
+
+        this.setField("asyncPoolSize", 8, test);
+        Assertions.assertEquals(8, test.getAsyncPoolSize());
+    }
+
+    @Test
+    public void test_callAsync_badUrl() {
+        try {
+            this.service.callAsync(null, "smb://", null, null, null).join();
+            Assertions.fail("Expected excpetion");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("Invalid URL", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_callAll() throws Exception {
+        RestTemplate template = Mockito.mock(RestTemplate.class);
+        HttpService test = new HttpService() {
+            @Override
+            public RestTemplate createRestTemplate() {
+                return template;
+            }
+        };
+        this.setField("asyncMaxConcurrent", 2, test);
+
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        Mockito.when(template.exchange(ArgumentMatchers.notNull(), ArgumentMatchers.eq(HttpMethod.GET), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(String.class))).thenAnswer(invocation -> {
+                    int now = current.incrementAndGet();
+                    max.accumulateAndGet(now, Math::max);
+                    Thread.sleep(50);
+                    current.decrementAndGet();
+                    return new ResponseEntity<>(invocation.getArgument(0).toString(), HttpStatus.OK);
+                });
+
+        List<HttpServiceRequest<String>> requests = Arrays.asList( //
+                new HttpServiceRequest<>(HttpMethod.GET, "http://localhost/1", String.class), //
+                new HttpServiceRequest<>(HttpMethod.GET, "http://localhost/2", String.class), //
+                new HttpServiceRequest<>(HttpMethod.GET, "http://localhost/3", String.class), //
+                new HttpServiceRequest<>(HttpMethod.GET, "http://localhost/4", String.class), //
+                new HttpServiceRequest<>(HttpMethod.GET, "http://localhost/5", String.class));
+
+        List<ResponseEntity<String>> result = test.callAll(requests).join();
+        Assertions.assertEquals(5, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            Assertions.assertEquals("http://localhost/" + (i + 1), result.get(i).getBody());
+        }
+        Assertions.assertTrue(max.get() <= 2);
+
+        test.destroy();
+    }
+
+    @Test
+    public void test_callAll_empty() {
+        Assertions.assertTrue(this.service.callAll(null).join().isEmpty());
+        Assertions.assertTrue(this.service.<Object>callAll(Arrays.asList()).join().isEmpty());
+    }
+
+    @Test
+    public void test_stream() throws Exception {
+        String url = this.startServer();
+
+        final StringBuilder sb = new StringBuilder();
+        ResponseEntity<Void> result = this.service.stream(HttpMethod.GET, url + "/stream", null, null, in -> {
+            try {
+                sb.append(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                Assertions.fail("Unexpected exception", ex);
+            }
+        });
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertNull(result.getBody());
+        Assertions.assertEquals("streamed-content", sb.toString());
+    }
+
+    @Test
+    public void test_open() throws Exception {
+        String url = this.startServer();
+
+        try (StreamingResponse response = this.service.open(HttpMethod.GET, url + "/stream", null, null)) {
+            Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+            Assertions.assertEquals(16, response.getHeaders().getContentLength());
+            Assertions.assertEquals("streamed-content", new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void test_open_error() throws Exception {
+        String url = this.startServer();
+
+        try {
+            this.service.open(HttpMethod.GET, url + "/error", null, null);
+            Assertions.fail("Expected exception");
+        } catch (HttpServerErrorException ex) {
+            Assertions.assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ex.getStatusCode());
+        }
+    }
+
+    @Test
+    public void test_open_ioError() {
+        try {
+            this.service.open(HttpMethod.GET, "http://localhost:1/stream", null, null);
+            Assertions.fail("Expected exception");
+        } catch (ResourceAccessException ex) {
+            Assertions.assertTrue(ex.getMessage().startsWith("I/O error on GET request for \"http://localhost:1/stream\""));
+        }
+    }
+
+    @Test
+    public void test_upload_stream() throws Exception {
+        String url = this.startServer();
+
+        ByteArrayInputStream body = new ByteArrayInputStream("uploaded".getBytes(StandardCharsets.UTF_8));
+        ResponseEntity<String> result = this.service.upload(HttpMethod.POST, url + "/echo", null, String.class, body);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("uploaded", result.getBody());
+    }
+
+    @Test
+    public void test_upload_file() throws Exception {
+        String url = this.startServer();
+
+        Path file = Files.createTempFile("upload", ".txt");
+        try {
+            Files.write(file, "file-content".getBytes(StandardCharsets.UTF_8));
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", "text/plain");
+            ResponseEntity<String> result = this.service.upload(HttpMethod.PUT, url + "/echo", headers, String.class, file);
+            Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+            Assertions.assertEquals("file-content", result.getBody());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void test_upload_missingFile() {
+        try {
+            this.service.upload(HttpMethod.PUT, "http://localhost", null, String.class, Path.of("does-not-exist.txt"));
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertTrue(ex.getMessage().startsWith("Error reading "));
+        }
+    }
+
+    @Test
+    public void test_toRequestConfig_null() {
+        Assertions.assertNull(this.service.toRequestConfig(null));
+    }
+
+    @Test
+    public void test_toRequestConfig_defaults() {
+        RequestConfig config = this.service.toRequestConfig(new RequestOptions());
+        Assertions.assertEquals(HttpService.DEFAULT_TIMEOUT, config.getResponseTimeout().toMilliseconds());
+        Assertions.assertEquals(HttpService.DEFAULT_TIMEOUT, config.getConnectionRequestTimeout().toMilliseconds());
+    }
+
+    @Test
+    public void test_toRequestConfig_socketTimeout() {
+        RequestOptions options = new RequestOptions();
+        options.setSocketTimeout(Duration.ofMillis(500));
+        options.setResponseTimeout(Duration.ofMillis(1000));
+
+        RequestConfig config = this.service.toRequestConfig(options);
+        Assertions.assertEquals(500, config.getResponseTimeout().toMilliseconds());
+    }
+
+    @Test
+    public void test_toRequestConfig_deadline() {
+        RequestOptions options = RequestOptions.withDeadline(Instant.now().plusMillis(2000));
+        options.setResponseTimeout(Duration.ofMillis(5000));
+
+        RequestConfig config = this.service.toRequestConfig(options);
+        Assertions.assertTrue(config.getResponseTimeout().toMilliseconds() <= 2000);
+        Assertions.assertTrue(config.getConnectionRequestTimeout().toMilliseconds() <= 2000);
+    }
+
+    @Test
+    public void test_toRequestConfig_deadlineExceeded() {
+        RequestOptions options = RequestOptions.withDeadline(Instant.now().minusMillis(1));
+
+        try {
+            this.service.toRequestConfig(options);
+            Assertions.fail("Expected exception");
+        } catch (ResourceAccessException ex) {
+            Assertions.assertEquals("Deadline exceeded", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_call_withOptions() throws Exception {
+        String url = this.startServer();
+
+        ResponseEntity<String> result = this.service.call(HttpMethod.GET, url + "/stream", null, String.class, null,
+                RequestOptions.withTimeout(Duration.ofSeconds(5)));
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("streamed-content", result.getBody());
+    }
+
+    @Test
+    public void test_call_withOptions_timeout() throws Exception {
+        String url = this.startServer();
+
+        try {
+            this.service.call(HttpMethod.GET, url + "/slow", null, String.class, null, RequestOptions.withTimeout(Duration.ofMillis(100)));
+            Assertions.fail("Expected exception");
+        } catch (ResourceAccessException ex) {
+            // expected
+        }
+
+        // default timeout still applies to calls without options
+        ResponseEntity<String> result = this.service.call(HttpMethod.GET, url + "/slow", null, String.class, null);
+        Assertions.assertEquals(HttpStatus.NO_CONTENT, result.getStatusCode());
+    }
+
+    private HttpService resilientService() {
+        HttpService test = new HttpService();
+        this.setField("resilienceEnabled", true, test);
+        this.setField("retryBackoff", 1, test);
+        this.setField("retryMaxBackoff", 5, test);
+        return test;
+    }
+
+    @Test
+    public void test_resilience_retry() throws Exception {
+        String url = this.startServer();
+        HttpService test = this.resilientService();
+
+        ResponseEntity<String> result = test.call(HttpMethod.GET, url + "/flaky", null, String.class, null);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("ok", result.getBody());
+        Assertions.assertEquals(3, this.serverHits.get());
+        Assertions.assertEquals(CircuitBreaker.States.Closed, test.getCircuitBreaker(test.toHostKey(URI.create(url))).getState());
+
+        test.destroy();
+    }
+
+    @Test
+    public void test_resilience_noRetry_nonIdempotent() throws Exception {
+        String url = this.startServer();
+        HttpService test = this.resilientService();
+
+        try {
+            test.call(HttpMethod.POST, url + "/flaky", null, String.class, "body");
+            Assertions.fail("Expected exception");
+        } catch (HttpServerErrorException ex) {
+            Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+        }
+        Assertions.assertEquals(1, this.serverHits.get());
+
+        test.destroy();
+    }
+
+    @Test
+    public void test_resilience_noRetry_500() throws Exception {
+        String url = this.startServer();
+        HttpService test = this.resilientService();
+
+        try {
+            test.call(HttpMethod.GET, url + "/error", null, String.class, null);
+            Assertions.fail("Expected exception");
+        } catch (HttpServerErrorException ex) {
+            Assertions.assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ex.getStatusCode());
+        }
+        Assertions.assertEquals(1, this.serverHits.get());
+
+        test.destroy();
+    }
+
+    @Test
+    public void test_resilience_circuitOpens() throws Exception {
+        String url = this.startServer();
+        HttpService test = this.resilientService();
+        this.setField("circuitBreakerFailureThreshold", 2, test);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                test.call(HttpMethod.GET, url + "/error", null, String.class, null);
+                Assertions.fail("Expected exception");
+            } catch (HttpServerErrorException ex) {
+                // expected
+            }
+        }
+
+        try {
+            test.call(HttpMethod.GET, url + "/error", null, String.class, null);
+            Assertions.fail("Expected exception");
+        } catch (ResourceAccessException ex) {
+            Assertions.assertTrue(ex.getMessage().startsWith("Circuit open for "));
+        }
+        Assertions.assertEquals(2, this.serverHits.get());
+
+        test.destroy();
+    }
+
+    @Test
+    public void test_resilience_bulkheadFull() throws Exception {
+        HttpService test = this.resilientService();
+        URI uri = URI.create("http://localhost:1");
+        test.getBulkhead(test.toHostKey(uri)).drainPermits();
+
+        try {
+            test.call(HttpMethod.GET, uri.toString(), null, String.class, null);
+            Assertions.fail("Expected exception");
+        } catch (ResourceAccessException ex) {
+            Assertions.assertEquals("Bulkhead full for http://localhost:1", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_resilience_ioError() {
+        HttpService test = this.resilientService();
+        this.setField("retryMaxAttempts", 2, test);
+
+        try {
+            test.call(HttpMethod.GET, "http://127.0.0.1:1/", null, String.class, null);
+            Assertions.fail("Expected exception");
+        } catch (ResourceAccessException ex) {
+            // expected
+        }
+        Assertions.assertEquals(CircuitBreaker.States.Closed, test.getCircuitBreaker("http://127.0.0.1:1").getState());
+    }
+
+    @Test
+    public void test_backoff_deadline() {
+        Assertions.assertTrue(this.service.backoff(1, null));
+        Assertions.assertFalse(this.service.backoff(1, RequestOptions.withDeadline(Instant.now().plusMillis(1))));
+    }
+
+    @Test
+    public void test_isIdempotent() {
+        Assertions.assertTrue(this.service.isIdempotent(HttpMethod.GET));
+        Assertions.assertTrue(this.service.isIdempotent(HttpMethod.PUT));
+        Assertions.assertTrue(this.service.isIdempotent(HttpMethod.DELETE));
+        Assertions.assertFalse(this.service.isIdempotent(HttpMethod.POST));
+        Assertions.assertFalse(this.service.isIdempotent(HttpMethod.PATCH));
+    }
+
+    @Test
+    public void test_responseCache_disabled() {
+        Assertions.assertNull(this.service.getResponseCache());
+        Assertions.assertTrue(this.service.createInterceptors().isEmpty());
+    }
+
+    @Test
+    public void test_responseCache_revalidates() throws Exception {
+        String url = this.startServer();
+        HttpService test = new HttpService();
+        this.setField("cacheEnabled", true, test);
+
+        HttpResponseCache cache = test.getResponseCache();
+        Assertions.assertSame(cache, test.getResponseCache());
+        Assertions.assertEquals(1, test.createInterceptors().size());
+
+        ResponseEntity<String> result = test.call(HttpMethod.GET, url + "/cached", null, String.class, null);
+        Assertions.assertEquals("cached", result.getBody());
+        result = test.call(HttpMethod.GET, url + "/cached", null, String.class, null);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("cached", result.getBody());
+
+        Assertions.assertEquals(2, this.serverHits.get());
+        Assertions.assertEquals(1, cache.getMisses());
+        Assertions.assertEquals(1, cache.getRevalidations());
+
+        test.destroy();
+    }
+
+    @Test
+    public void test_responseCache_uploadNotBuffered() throws Exception {
+        String url = this.startServer();
+        HttpService test = new HttpService();
+        this.setField("cacheEnabled", true, test);
+
+        ResponseEntity<String> result = test.upload(HttpMethod.POST, url + "/echo", null, String.class,
+                new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals("abc", result.getBody());
+        Assertions.assertEquals(0, test.getResponseCache().size());
+
+        test.destroy();
+    }
+
+    @Test
+    public void test_getCoalescingMaxWait() {
+        Assertions.assertEquals(60 * 1000, this.service.getCoalescingMaxWait());
+
+        ThreadLocal<RequestOptions> options = this.getField("callOptions", this.service);
+        try {
+            options.set(RequestOptions.withTimeout(Duration.ofSeconds(2)));
+            Assertions.assertEquals(4000, this.service.getCoalescingMaxWait());
+
+            options.set(RequestOptions.withDeadline(Instant.now().plusSeconds(5)));
+            long wait = this.service.getCoalescingMaxWait();
+            Assertions.assertTrue(wait > 0 && wait <= 5000);
+
+            options.set(RequestOptions.withDeadline(Instant.now().minusSeconds(5)));
+            Assertions.assertEquals(1, this.service.getCoalescingMaxWait());
+        } finally {
+            options.remove();
+        }
+    }
+
+    @Test
+    public void test_requestCoalescer_disabled() {
+        Assertions.assertNull(this.service.getRequestCoalescer());
+    }
+
+    @Test
+    public void test_requestCoalescer() throws Exception {
+        String url = this.startServer();
+        HttpService test = new HttpService();
+        this.setField("coalescingEnabled", true, test);
+        this.setField("cacheEnabled", true, test);
+
+        HttpRequestCoalescer coalescer = test.getRequestCoalescer();
+        Assertions.assertSame(coalescer, test.getRequestCoalescer());
+        Assertions.assertEquals(Arrays.asList("Accept", "Accept-Language", "Authorization", "Cookie"), coalescer.getKeyHeaders());
+        List<ClientHttpRequestInterceptor> interceptors = test.createInterceptors();
+        Assertions.assertSame(test.getResponseCache(), interceptors.get(0));
+        Assertions.assertSame(coalescer, interceptors.get(1));
+
+        List<CompletableFuture<ResponseEntity<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(test.callAsync(HttpMethod.GET, url + "/slow", null, String.class, null));
+        }
+        for (CompletableFuture<ResponseEntity<String>> future : futures) {
+            Assertions.assertEquals(HttpStatus.NO_CONTENT, future.get().getStatusCode());
+        }
+
+        Assertions.assertEquals(5, coalescer.getExecutions() + coalescer.getCoalesced());
+        Assertions.assertEquals(coalescer.getExecutions(), this.serverHits.get());
+        Assertions.assertTrue(coalescer.getCoalesced() > 0);
+
+        test.destroy();
+    }
 }
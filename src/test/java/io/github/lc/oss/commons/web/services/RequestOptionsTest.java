@@ -0,0 +1,44 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractTest;
+
+public class RequestOptionsTest extends AbstractTest {
+    @Test
+    public void test_defaults() {
+        RequestOptions options = new RequestOptions();
+        Assertions.assertNull(options.getConnectTimeout());
+        Assertions.assertNull(options.getSocketTimeout());
+        Assertions.assertNull(options.getResponseTimeout());
+        Assertions.assertNull(options.getDeadline());
+        Assertions.assertNull(options.getRemaining());
+    }
+
+    @Test
+    public void test_withTimeout() {
+        RequestOptions options = RequestOptions.withTimeout(Duration.ofSeconds(2));
+        Assertions.assertEquals(Duration.ofSeconds(2), options.getConnectTimeout());
+        Assertions.assertEquals(Duration.ofSeconds(2), options.getSocketTimeout());
+        Assertions.assertEquals(Duration.ofSeconds(2), options.getResponseTimeout());
+        Assertions.assertNull(options.getDeadline());
+    }
+
+    @Test
+    public void test_withDeadline() {
+        Instant deadline = Instant.now().plusSeconds(10);
+        RequestOptions options = RequestOptions.withDeadline(deadline);
+        Assertions.assertSame(deadline, options.getDeadline());
+
+        Duration remaining = options.getRemaining();
+        Assertions.assertTrue(remaining.toMillis() > 0);
+        Assertions.assertTrue(remaining.toMillis() <= 10000);
+
+        options.setDeadline(Instant.now().minusSeconds(1));
+        Assertions.assertTrue(options.getRemaining().isNegative());
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.lc.oss.commons.web.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class StreamingResponseTest extends AbstractMockTest {
+    @Test
+    public void test_delegates() throws Exception {
+        ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+        HttpHeaders headers = new HttpHeaders();
+        InputStream body = new ByteArrayInputStream(new byte[0]);
+
+        Mockito.when(response.getStatusCode()).thenReturn(HttpStatus.ACCEPTED);
+        Mockito.when(response.getHeaders()).thenReturn(headers);
+        Mockito.when(response.getBody()).thenReturn(body);
+
+        try (StreamingResponse result = new StreamingResponse(response)) {
+            Assertions.assertEquals(HttpStatus.ACCEPTED, result.getStatusCode());
+            Assertions.assertSame(headers, result.getHeaders());
+            Assertions.assertSame(body, result.getBody());
+        }
+
+        Mockito.verify(response).close();
+    }
+}
@@ -188,4 +188,26 @@ public class ThemeServiceTest extends AbstractMockTest {
         result = this.service.themeExists(" \t \r \n \t ");
         Assertions.assertFalse(result);
     }
+
+    @Test
+    public void test_getThemes() {
+        ThemeService service = new ThemeService();
+
+        Set<String> result = service.getThemes();
+        Assertions.assertTrue(result.isEmpty());
+        Assertions.assertSame(result, service.getThemes());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> result.add("theme"));
+    }
+
+    @Test
+    public void test_clearCache() {
+        ThemeService service = new ThemeService();
+
+        Set<String> result = service.getThemes();
+        Assertions.assertSame(result, service.getThemes());
+
+        service.clearCache();
+        Assertions.assertNull(this.getField("validThemes", service));
+        Assertions.assertNotSame(result, service.getThemes());
+    }
 }
@@ -0,0 +1,48 @@
+package io.github.lc.oss.commons.web.util;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractTest;
+
+public class ContentHashTest extends AbstractTest {
+    private long hash(String value) {
+        return ContentHash.xxh64(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void test_xxh64_referenceValues() {
+        Assertions.assertEquals("ef46db3751d8e999", ContentHash.toHex(this.hash("")));
+        Assertions.assertEquals("d24ec4f1a98c6e5b", ContentHash.toHex(this.hash("a")));
+        Assertions.assertEquals("44bc2cf5ad770999", ContentHash.toHex(this.hash("abc")));
+        Assertions.assertEquals("fbcea83c8a378bf1", ContentHash.toHex(this.hash("Nobody inspects the spammish repetition")));
+    }
+
+    @Test
+    public void test_xxh64_offset() {
+        byte[] data = "__abc__".getBytes(StandardCharsets.UTF_8);
+
+        Assertions.assertEquals(this.hash("abc"), ContentHash.xxh64(data, 2, 3, 0));
+        Assertions.assertNotEquals(this.hash("abc"), ContentHash.xxh64(data, 2, 3, 1));
+    }
+
+    @Test
+    public void test_xxh64_allLengths() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String value = sb.toString();
+            Assertions.assertEquals(this.hash(value), this.hash(new String(value)));
+            Assertions.assertNotEquals(this.hash(value), this.hash(value + "x"));
+            sb.append((char) ('a' + i % 26));
+        }
+    }
+
+    @Test
+    public void test_etag() {
+        Assertions.assertEquals("\"44bc2cf5ad770999\"", ContentHash.etag("abc"));
+        Assertions.assertEquals("\"44bc2cf5ad770999\"", ContentHash.etag("abc".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals("\"000000000000000f\"", ContentHash.toETag(15));
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.lc.oss.commons.web.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractTest;
+
+public class DirectoryWatcherTest extends AbstractTest {
+    @Test
+    public void test_watch() throws Exception {
+        Path root = Files.createTempDirectory("watch");
+        Path existing = Files.createDirectory(root.resolve("existing"));
+        Set<Path> changes = ConcurrentHashMap.newKeySet();
+
+        DirectoryWatcher watcher = new DirectoryWatcher(root, 2, changes::add);
+        Assertions.assertSame(root, watcher.getRoot());
+        try {
+            watcher.start();
+            // no-op
+            watcher.start();
+
+            Path file = Files.writeString(root.resolve("a.css"), "a");
+            this.waitUntil(() -> changes.contains(file));
+
+            Path nested = Files.writeString(existing.resolve("b.css"), "b");
+            this.waitUntil(() -> changes.contains(nested));
+
+            Path created = Files.createDirectory(root.resolve("created"));
+            this.waitUntil(() -> changes.contains(created));
+            Path inCreated = Files.writeString(created.resolve("c.css"), "c");
+            this.waitUntil(() -> changes.contains(inCreated));
+        } finally {
+            watcher.close();
+            // no-op
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void test_watch_listenerError() throws Exception {
+        Path root = Files.createTempDirectory("watch");
+        Set<Path> changes = ConcurrentHashMap.newKeySet();
+
+        DirectoryWatcher watcher = new DirectoryWatcher(root, 0, p -> {
+            changes.add(p);
+            throw new RuntimeException("boom");
+        });
+        try {
+            watcher.start();
+
+            Path first = Files.writeString(root.resolve("a.css"), "a");
+            this.waitUntil(() -> changes.contains(first));
+            Path second = Files.writeString(root.resolve("b.css"), "b");
+            this.waitUntil(() -> changes.contains(second));
+        } finally {
+            watcher.close();
+        }
+    }
+}
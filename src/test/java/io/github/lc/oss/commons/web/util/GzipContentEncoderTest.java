@@ -0,0 +1,38 @@
+package io.github.lc.oss.commons.web.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractTest;
+
+public class GzipContentEncoderTest extends AbstractTest {
+    @Test
+    public void test_encode() throws Exception {
+        GzipContentEncoder encoder = new GzipContentEncoder();
+        Assertions.assertEquals("gzip", encoder.getEncoding());
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append(".class-").append(i % 10).append("{color:red}");
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] encoded = encoder.encode(data);
+        Assertions.assertTrue(encoded.length < data.length / 10);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            Assertions.assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void test_encode_empty() throws Exception {
+        byte[] encoded = new GzipContentEncoder().encode(new byte[0]);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            Assertions.assertEquals(0, in.readAllBytes().length);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package io.github.lc.oss.commons.web.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractTest;
+
+public class WeightedCacheTest extends AbstractTest {
+    @Test
+    public void test_getPut() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+        Assertions.assertNull(cache.get("a"));
+
+        cache.put("a", "1");
+        Assertions.assertEquals("1", cache.get("a"));
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(1, cache.getWeight());
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+
+        cache.put("a", "2");
+        Assertions.assertEquals("2", cache.get("a"));
+        Assertions.assertEquals(1, cache.getWeight());
+
+        cache.put("a", null);
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void test_removeAndClear() {
+        WeightedCache<String, String> cache = new WeightedCache<>(0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+
+        Assertions.assertEquals("1", cache.remove("a"));
+        Assertions.assertNull(cache.remove("a"));
+        Assertions.assertEquals(2, cache.size());
+
+        cache.removeIf(k -> k.equals("b"));
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertTrue(cache.keySet().contains("c"));
+
+        cache.clear();
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void test_loader() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+        AtomicInteger calls = new AtomicInteger();
+
+        Assertions.assertEquals("a!", cache.get("a", k -> {
+            calls.incrementAndGet();
+            return k + "!";
+        }));
+        Assertions.assertEquals("a!", cache.get("a", k -> {
+            calls.incrementAndGet();
+            return k + "!";
+        }));
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void test_loader_null() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+
+        Assertions.assertNull(cache.get("a", k -> null));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_loader_error() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+
+        try {
+            cache.get("a", k -> {
+                throw new RuntimeException("boom");
+            });
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertEquals("boom", ex.getMessage());
+        }
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals("1", cache.get("a", k -> "1"));
+    }
+
+    @Test
+    public void test_loader_invalid() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+        cache.put("a", "old");
+
+        Assertions.assertEquals("old", cache.get("a", v -> true, k -> "new"));
+        Assertions.assertEquals("new", cache.get("a", v -> v.equals("new"), k -> "new"));
+        Assertions.assertEquals(1, cache.getWeight());
+    }
+
+    @Test
+    public void test_eviction() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10, v -> v.length());
+        cache.put("a", "12345");
+        cache.put("b", "1234");
+        cache.get("a");
+        cache.put("c", "123");
+
+        Assertions.assertEquals(1, cache.getEvictions());
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertEquals("12345", cache.get("a"));
+        Assertions.assertEquals("123", cache.get("c"));
+        Assertions.assertEquals(8, cache.getWeight());
+        Assertions.assertEquals(10, cache.getMaxWeight());
+    }
+
+    @Test
+    public void test_loader_singleFlight() throws Exception {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.get("a", k -> {
+                    calls.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "v";
+                })));
+            }
+
+            this.waitUntil(() -> calls.get() == 1);
+            release.countDown();
+            for (Future<String> result : results) {
+                Assertions.assertEquals("v", result.get());
+            }
+            Assertions.assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_loader_error_notShared() throws Exception {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> failed = pool.submit(() -> cache.get("a", k -> {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new RuntimeException("boom");
+            }));
+            loading.await();
+
+            Future<String> waiter = pool.submit(() -> cache.get("a", k -> "v"));
+            release.countDown();
+
+            try {
+                failed.get();
+                Assertions.fail("Expected exception");
+            } catch (ExecutionException ex) {
+                Assertions.assertEquals("boom", ex.getCause().getMessage());
+            }
+            Assertions.assertEquals("v", waiter.get());
+            Assertions.assertEquals("v", cache.get("a"));
+            Assertions.assertEquals(1, cache.getWeight());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_loader_recursive() {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+
+        try {
+            cache.get("a", k -> cache.get("a", k2 -> "inner"));
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertEquals("Recursive load of key 'a'", ex.getMessage());
+        }
+        Assertions.assertEquals(0, cache.size());
+
+        // other keys are fine
+        Assertions.assertEquals("b1", cache.get("a", k -> cache.get("b", k2 -> "b") + "1"));
+    }
+
+    @Test
+    public void test_eviction_concurrentReads() throws Exception {
+        WeightedCache<Integer, String> cache = new WeightedCache<>(64);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        int key = (i * 31 + seed) % 256;
+                        if (seed % 2 == 0) {
+                            cache.put(key, "x");
+                        } else {
+                            cache.get(key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            Assertions.assertTrue(cache.getEvictions() > 0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_weight_concurrent() throws Exception {
+        WeightedCache<Integer, String> cache = new WeightedCache<>(20, v -> v.length());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        int key = (i * 7 + seed) % 16;
+                        switch (i % 4) {
+                            case 0:
+                                cache.put(key, "xx");
+                                break;
+                            case 1:
+                                cache.remove(key);
+                                break;
+                            case 2:
+                                cache.get(key, v -> v.length() > 2, k -> "xxx");
+                                break;
+                            default:
+                                cache.get(key, k -> "x");
+                                break;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+
+            long expected = 0;
+            for (Integer key : cache.keySet()) {
+                expected += cache.get(key).length();
+            }
+            Assertions.assertEquals(expected, cache.getWeight());
+
+            cache.clear();
+            Assertions.assertEquals(0, cache.getWeight());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}